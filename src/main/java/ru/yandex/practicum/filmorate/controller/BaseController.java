@@ -1,28 +1,56 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.service.BaseService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
 
 abstract class BaseController<T> {
 
     private final BaseService<T> service;
+    private final ObjectMapper objectMapper;
 
-    protected BaseController(BaseService<T> service) {
+    protected BaseController(BaseService<T> service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
-    @GetMapping
-    public List<T> findAll() {
-        return service.findAll();
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<T> findAll(@RequestParam Optional<Long> after, @RequestParam Optional<Integer> limit) {
+        if (after.isEmpty() && limit.isEmpty()) {
+            return service.findAll();
+        }
+        return service.findPage(after, limit);
+    }
+
+    // Accept: application/x-ndjson - по одному объекту в строке, запись идёт по мере чтения страниц из БД
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAll() {
+        return outputStream -> service.forEachPage(page -> {
+            try {
+                for (T obj : page) {
+                    outputStream.write(objectMapper.writeValueAsBytes(obj));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @GetMapping("/{id}")
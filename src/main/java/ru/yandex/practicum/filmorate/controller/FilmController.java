@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.Positive;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -10,6 +11,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.List;
@@ -21,23 +24,45 @@ public class FilmController extends BaseController<Film> {
     private final FilmService filmService;
 
     @Autowired
-    public FilmController(FilmService filmService) {
-        super(filmService);
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
+        super(filmService, objectMapper);
         this.filmService = filmService;
     }
 
     @GetMapping("/popular")
-    public List<Film> findPopular(@RequestParam Optional<Integer> count) {
-        return filmService.findPopular(count);
+    public List<Film> findPopular(@RequestParam Optional<Integer> count,
+                                  @RequestParam Optional<Long> genreId,
+                                  @RequestParam Optional<Long> mpaId,
+                                  @RequestParam Optional<Integer> year) {
+        return filmService.findPopular(count,
+                new PopularFilmsFilter(genreId.orElse(null), mpaId.orElse(null), year.orElse(null)));
+    }
+
+    @GetMapping("/trending")
+    public List<Film> findTrending(@RequestParam(defaultValue = "24h") String window,
+                                   @RequestParam Optional<Integer> count) {
+        return filmService.findTrending(window, count);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> findSimilar(@PathVariable @Positive long id, @RequestParam Optional<Integer> limit) {
+        return filmService.findSimilar(id, limit);
+    }
+
+    @GetMapping("/{id}/likes")
+    public List<Long> findLikes(@PathVariable @Positive long id,
+                                @RequestParam Optional<Long> after,
+                                @RequestParam Optional<Integer> limit) {
+        return filmService.findLikes(id, after, limit);
     }
 
     @PutMapping("/{id}/like/{userId}")
-    public Film addLike(@PathVariable @Positive long id, @PathVariable @Positive long userId) {
+    public LikeResult addLike(@PathVariable @Positive long id, @PathVariable @Positive long userId) {
         return filmService.addLike(id, userId);
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public Film deleteLike(@PathVariable @Positive long id, @PathVariable @Positive long userId) {
+    public LikeResult deleteLike(@PathVariable @Positive long id, @PathVariable @Positive long userId) {
         return filmService.deleteLike(id, userId);
     }
 }
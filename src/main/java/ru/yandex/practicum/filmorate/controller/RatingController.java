@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -11,7 +12,7 @@ import ru.yandex.practicum.filmorate.service.RatingService;
 public class RatingController extends BaseController<Rating> {
 
     @Autowired
-    RatingController(RatingService service) {
-        super(service);
+    RatingController(RatingService service, ObjectMapper objectMapper) {
+        super(service, objectMapper);
     }
 }
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.Positive;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -7,21 +8,27 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/users")
 public class UserController extends BaseController<User> {
     private final UserService userService;
+    private final FilmService filmService;
 
     @Autowired
-    public UserController(UserService userService) {
-        super(userService);
+    public UserController(UserService userService, FilmService filmService, ObjectMapper objectMapper) {
+        super(userService, objectMapper);
         this.userService = userService;
+        this.filmService = filmService;
     }
 
     @GetMapping("/{id}/friends")
@@ -29,9 +36,34 @@ public class UserController extends BaseController<User> {
         return userService.findFriends(id);
     }
 
+    @GetMapping("/{id}/friends/count")
+    public int countFriends(@PathVariable @Positive long id) {
+        return userService.countFriends(id);
+    }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> findFriendSuggestions(@PathVariable @Positive long id, @RequestParam Optional<Integer> limit) {
+        return userService.findFriendSuggestions(id, limit);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> findCommonFriends(@PathVariable @Positive long id, @PathVariable @Positive long otherId) {
-        return userService.findCommonFriends(id, otherId);
+    public List<User> findCommonFriends(@PathVariable @Positive long id,
+                                        @PathVariable @Positive long otherId,
+                                        @RequestParam Optional<Long> after,
+                                        @RequestParam Optional<Integer> limit) {
+        return userService.findCommonFriends(id, otherId, after, limit);
+    }
+
+    @GetMapping("/{id}/path/{otherId}")
+    public List<User> findFriendPath(@PathVariable @Positive long id,
+                                     @PathVariable @Positive long otherId,
+                                     @RequestParam Optional<Integer> maxLength) {
+        return userService.findFriendPath(id, otherId, maxLength);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> findRecommendations(@PathVariable @Positive long id, @RequestParam Optional<Integer> limit) {
+        return filmService.findRecommendations(id, limit);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
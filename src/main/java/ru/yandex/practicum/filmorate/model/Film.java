@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.validation.constraints.NotBlank;
@@ -23,9 +22,10 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor // @Builder без этой аннотации ломает десериализацию duration
 @AllArgsConstructor
 @EqualsAndHashCode(of = {"name", "releaseDate"})
@@ -51,14 +51,23 @@ public class Film {
     @JsonSerialize(using = DurationSerializer.class)
     private Duration duration;
 
+    // ограниченная выборка лайкнувших, полный список доступен через GET /films/{id}/likes
     private Set<Long> likes;
 
+    private long likesCount;
+
     private LinkedHashSet<Genre> genres;
 
     private Rating mpa;
 
-    @JsonIgnore
-    public int getLikesCount() {
-        return likes.size();
+    // Копия, не разделяющая с оригиналом ни коллекций, ни объектов жанров и рейтинга
+    public Film copy() {
+        return toBuilder()
+                .likes(likes == null ? null : new LinkedHashSet<>(likes))
+                .genres(genres == null ? null : genres.stream()
+                        .map(genre -> genre.toBuilder().build())
+                        .collect(Collectors.toCollection(LinkedHashSet::new)))
+                .mpa(mpa == null ? null : mpa.toBuilder().build())
+                .build();
     }
 }
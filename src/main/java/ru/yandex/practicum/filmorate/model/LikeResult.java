@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+// Ответ на добавление или удаление лайка: без загрузки фильма, только новое значение счётчика
+public record LikeResult(long filmId, long userId, long likesCount) {
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+// Фильтры GET /films/popular; null - фильтр не задан
+public record PopularFilmsFilter(Long genreId, Long mpaId, Integer year) {
+    public static final PopularFilmsFilter NONE = new PopularFilmsFilter(null, null, null);
+
+    public boolean isEmpty() {
+        return genreId == null && mpaId == null && year == null;
+    }
+
+    public boolean matches(Film film) {
+        return (genreId == null || film.getGenres() != null && film.getGenres().stream().anyMatch(genre -> genreId.equals(genre.getId())))
+                && (mpaId == null || film.getMpa() != null && mpaId.equals(film.getMpa().getId()))
+                && (year == null || film.getReleaseDate() != null && film.getReleaseDate().getYear() == year);
+    }
+}
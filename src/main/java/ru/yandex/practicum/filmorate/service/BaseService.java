@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -8,9 +9,12 @@ import ru.yandex.practicum.filmorate.util.logger.LoggerMessagePattern;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 public abstract class BaseService<T> {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final Storage<T> storage;
 
@@ -28,6 +32,35 @@ public abstract class BaseService<T> {
         }
     }
 
+    public List<T> findPage(Optional<Long> after, Optional<Integer> limit) {
+        log.debug(LoggerMessagePattern.DEBUG, "findPage", "after=%s, limit=%s".formatted(after, limit));
+        try {
+            int pageSize = boundedLimit("limit", limit, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+            return storage.findPage(after.orElse(0L), pageSize);
+        } catch (Exception e) {
+            log.warn(LoggerMessagePattern.WARN, "findPage", "after=%s, limit=%s".formatted(after, limit),
+                    e.getMessage(), e.getClass());
+            throw e;
+        }
+    }
+
+    // Обходит все объекты страницами по id, не загружая таблицу в память целиком
+    public void forEachPage(Consumer<List<T>> action) {
+        log.debug(LoggerMessagePattern.DEBUG, "forEachPage", null);
+        try {
+            long afterId = 0;
+            List<T> page = storage.findPage(afterId, MAX_PAGE_SIZE);
+            while (!page.isEmpty()) {
+                action.accept(page);
+                afterId = executeMethodGetId(page.getLast());
+                page = storage.findPage(afterId, MAX_PAGE_SIZE);
+            }
+        } catch (Exception e) {
+            log.warn(LoggerMessagePattern.WARN, "forEachPage", null, e.getMessage(), e.getClass());
+            throw e;
+        }
+    }
+
     public Optional<T> findById(Long id) {
         log.debug(LoggerMessagePattern.DEBUG, "findById", id);
         try {
@@ -78,6 +111,15 @@ public abstract class BaseService<T> {
         }
     }
 
+    // Размер выборки из запроса: меньше 1 - ошибка запроса, больше maxLimit урезается до maxLimit
+    protected static int boundedLimit(String name, Optional<Integer> limit, int defaultLimit, int maxLimit) {
+        int value = limit.orElse(defaultLimit);
+        if (value < 1) {
+            throw new ValidationException("Параметр %s должен быть больше 0: %d".formatted(name, value));
+        }
+        return Math.min(value, maxLimit);
+    }
+
     private boolean hasEqual(T obj) {
         log.debug(LoggerMessagePattern.DEBUG, "hasEqual", obj);
         try {
@@ -4,58 +4,147 @@ import jakarta.validation.ValidationException;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.film.FilmSimilarityIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.rating.RatingStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.cache.SingleFlight;
+import ru.yandex.practicum.filmorate.util.cache.TopListCache;
 import ru.yandex.practicum.filmorate.util.logger.LoggerMessagePattern;
 
-import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Getter
 @Service
 public class FilmService extends BaseService<Film> {
+    private static final int POPULAR_CACHE_MAX_FILTERS = 1000;
+    private static final int MAX_POPULAR_COUNT = 1000;
+    private static final int MAX_TRENDING_COUNT = 1000;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final GenreStorage genreStorage;
     private final RatingStorage ratingStorage;
+    // есть, только если включена отложенная запись лайков
+    private final Optional<LikeWriteBuffer> likeWriteBuffer;
+    // одновременные одинаковые чтения после промаха кэша выполняют один запрос к хранилищу
+    private final SingleFlight<Long, Optional<Film>> findByIdFlights = new SingleFlight<>();
+    private final SingleFlight<PopularQuery, List<Film>> findPopularFlights = new SingleFlight<>();
+    // популярные по фильтру; устаревший список отдаётся, пока он пересчитывается в фоне
+    private final TopListCache<PopularFilmsFilter, Film> popularCache;
 
     @Autowired
-    public FilmService(FilmStorage filmStorage, UserStorage userStorage, GenreStorage genreStorage, RatingStorage ratingStorage) {
+    public FilmService(FilmStorage filmStorage, UserStorage userStorage, GenreStorage genreStorage, RatingStorage ratingStorage,
+                       Optional<LikeWriteBuffer> likeWriteBuffer,
+                       @Value("${filmorate.films.popular-cache.ttl-ms:1000}") long popularCacheTtlMillis) {
         super(filmStorage);
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.genreStorage = genreStorage;
         this.ratingStorage = ratingStorage;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.popularCache = new TopListCache<>(TimeUnit.MILLISECONDS.toNanos(popularCacheTtlMillis), POPULAR_CACHE_MAX_FILTERS);
     }
 
-    public List<Film> findPopular(Optional<Integer> count) {
-        final Comparator<Film> likesCountComparator = Comparator.comparing(Film::getLikesCount).reversed();
+    public List<Film> findPopular(Optional<Integer> count, PopularFilmsFilter filter) {
         final int defaultCount = 10;
-        return filmStorage.findPopular(likesCountComparator, count.orElse(defaultCount));
+        int popularCount = boundedLimit("count", count, defaultCount, MAX_POPULAR_COUNT);
+        // кэш и общий запрос отдают одни и те же фильмы всем читателям, каждому достаются свои копии
+        return popularCache.get(filter, popularCount, (f, n) ->
+                        findPopularFlights.execute(new PopularQuery(n, f), () -> filmStorage.findPopular(n, f)))
+                .stream()
+                .map(Film::copy)
+                .toList();
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        // результат общего запроса получают все ожидавшие, каждому отдаётся своя копия
+        return findByIdFlights.execute(id, () -> super.findById(id)).map(Film::copy);
+    }
+
+    public List<Film> findTrending(String window, Optional<Integer> count) {
+        log.debug(LoggerMessagePattern.DEBUG, "find trending", "window=%s".formatted(window));
+        try {
+            final int defaultCount = 10;
+            TrendingWindow trendingWindow = TrendingWindow.fromCode(window)
+                    .orElseThrow(() -> new ValidationException("Неизвестное окно: %s, допустимо 1h, 24h или 7d"
+                            .formatted(window)));
+            int trendingCount = boundedLimit("count", count, defaultCount, MAX_TRENDING_COUNT);
+            return filmStorage.findTrending(trendingWindow, trendingCount);
+        } catch (Exception e) {
+            log.warn(LoggerMessagePattern.WARN, "find trending", "window=%s".formatted(window), e.getMessage(), e.getClass());
+            throw e;
+        }
+    }
+
+    public List<Film> findSimilar(long filmId, Optional<Integer> limit) {
+        log.debug(LoggerMessagePattern.DEBUG, "find similar", "filmId=%d".formatted(filmId));
+        try {
+            final int defaultLimit = 10;
+            List<Film> similar = filmStorage.findSimilar(filmId,
+                    boundedLimit("limit", limit, defaultLimit, FilmSimilarityIndex.MAX_SIMILAR));
+            if (similar.isEmpty()) {
+                findById(filmId);
+            }
+            return similar;
+        } catch (Exception e) {
+            log.warn(LoggerMessagePattern.WARN, "find similar", "filmId=%d".formatted(filmId), e.getMessage(), e.getClass());
+            throw e;
+        }
+    }
+
+    public List<Film> findRecommendations(long userId, Optional<Integer> limit) {
+        log.debug(LoggerMessagePattern.DEBUG, "find recommendations", "userId=%d".formatted(userId));
+        try {
+            final int defaultLimit = 10;
+            List<Film> recommendations = filmStorage.findRecommendations(userId,
+                    boundedLimit("limit", limit, defaultLimit, FilmSimilarityIndex.MAX_SIMILAR));
+            if (recommendations.isEmpty() && userStorage.findById(userId).isEmpty()) {
+                throw new NotFoundException("Пользователь не найден");
+            }
+            return recommendations;
+        } catch (Exception e) {
+            log.warn(
+                    LoggerMessagePattern.WARN,
+                    "find recommendations",
+                    "userId=%d".formatted(userId),
+                    e.getMessage(),
+                    e.getClass()
+            );
+            throw e;
+        }
     }
 
     @Override
     public Film create(Film film) {
         log.debug(LoggerMessagePattern.DEBUG, "create", film);
         try {
+            if (filmStorage.findEqual(film).isPresent()) {
+                throw new DuplicatedDataException("Такой фильм уже существует");
+            }
+
             if (film.getGenres() == null) {
                 film.setGenres(new LinkedHashSet<>());
             } else {
-                for (Genre genre : film.getGenres()) {
-                    if (genreStorage.findById(genre.getId()).isEmpty()) {
-                        throw new ValidationException("Жанр фильма не найден");
-                    }
-                }
+                validateGenres(film);
             }
 
             if (film.getMpa() != null && ratingStorage.findById(film.getMpa().getId()).isEmpty()) {
@@ -83,12 +172,7 @@ public class FilmService extends BaseService<Film> {
             }
 
             if (film.getGenres() != null) {
-                for (Genre genre : film.getGenres()) {
-                    Optional<Genre> genreOptional = genreStorage.findById(genre.getId());
-                    if (genreOptional.isEmpty()) {
-                        throw new ValidationException("Жанр фильма не найден");
-                    }
-                }
+                validateGenres(film);
             }
 
             if (film.getMpa() != null && ratingStorage.findById(film.getMpa().getId()).isEmpty()) {
@@ -97,6 +181,11 @@ public class FilmService extends BaseService<Film> {
 
             fillEmptyFields(film, oldFilmOpt.get());
 
+            Optional<Film> sameFilm = filmStorage.findEqual(film);
+            if (sameFilm.isPresent() && !Objects.equals(sameFilm.get().getId(), film.getId())) {
+                throw new DuplicatedDataException("Такой фильм уже существует");
+            }
+
             return filmStorage.update(film);
         } catch (Exception e) {
             log.warn(LoggerMessagePattern.WARN, "update", film, e.getMessage(), e.getClass());
@@ -104,6 +193,16 @@ public class FilmService extends BaseService<Film> {
         }
     }
 
+    private void validateGenres(Film film) {
+        List<Long> genreIds = film.getGenres().stream()
+                .map(Genre::getId)
+                .toList();
+        Set<Long> missingIds = genreStorage.findMissingIds(genreIds);
+        if (!missingIds.isEmpty()) {
+            throw new ValidationException("Жанры фильма не найдены: %s".formatted(missingIds));
+        }
+    }
+
     private static void fillEmptyFields(Film target, Film source) {
         if (target.getName() == null) {
             target.setName(source.getName());
@@ -124,25 +223,29 @@ public class FilmService extends BaseService<Film> {
             target.setMpa(source.getMpa());
         }
         target.setLikes(source.getLikes());
+        target.setLikesCount(source.getLikesCount());
     }
 
-    public Film addLike(long filmId, long userId) {
-        log.debug(LoggerMessagePattern.DEBUG, "add like", "filmId=%d, userId=%d".formatted(filmId, userId));
+    public List<Long> findLikes(long filmId, Optional<Long> after, Optional<Integer> limit) {
+        log.debug(LoggerMessagePattern.DEBUG, "find likes", "filmId=%d".formatted(filmId));
         try {
-            Optional<Film> filmOptional = findById(filmId);
-            if (filmOptional.isEmpty()) {
-                throw new NotFoundException("Фильм не найден");
-            }
-
-            if (userStorage.findById(userId).isEmpty()) {
-                throw new NotFoundException("Пользователь не найден");
-            }
+            final int defaultLimit = 100;
+            final int maxLimit = 1000;
+            int likesLimit = boundedLimit("limit", limit, defaultLimit, maxLimit);
+            findById(filmId);
+            return filmStorage.findLikes(filmId, after.orElse(0L), likesLimit);
+        } catch (Exception e) {
+            log.warn(LoggerMessagePattern.WARN, "find likes", "filmId=%d".formatted(filmId), e.getMessage(), e.getClass());
+            throw e;
+        }
+    }
 
-            Film film = filmOptional.get();
-            if (film.getLikes().contains(userId)) {
-                throw new DuplicatedDataException("Лайк от пользователя #%d добавлен ранее".formatted(userId));
-            }
-            return filmStorage.addLike(filmId, userId);
+    public LikeResult addLike(long filmId, long userId) {
+        log.debug(LoggerMessagePattern.DEBUG, "add like", "filmId=%d, userId=%d".formatted(filmId, userId));
+        try {
+            return likeWriteBuffer.isPresent()
+                    ? likeWriteBuffer.get().addLike(filmId, userId)
+                    : filmStorage.addLike(filmId, userId);
         } catch (Exception e) {
             log.warn(
                     LoggerMessagePattern.WARN,
@@ -155,23 +258,12 @@ public class FilmService extends BaseService<Film> {
         }
     }
 
-    public Film deleteLike(long filmId, long userId) {
+    public LikeResult deleteLike(long filmId, long userId) {
         log.debug(LoggerMessagePattern.DEBUG, "delete like", "filmId=%d, userId=%d".formatted(filmId, userId));
         try {
-            Optional<Film> filmOptional = findById(filmId);
-            if (filmOptional.isEmpty()) {
-                throw new NotFoundException("Фильм не найден");
-            }
-
-            if (userStorage.findById(userId).isEmpty()) {
-                throw new NotFoundException("Пользователь не найден");
-            }
-
-            Film film = filmOptional.get();
-            if (!film.getLikes().contains(userId)) {
-                throw new NotFoundException("Лайк от пользователя #%d не найден".formatted(userId));
-            }
-            return filmStorage.deleteLike(filmId, userId);
+            return likeWriteBuffer.isPresent()
+                    ? likeWriteBuffer.get().deleteLike(filmId, userId)
+                    : filmStorage.deleteLike(filmId, userId);
         } catch (Exception e) {
             log.warn(
                     LoggerMessagePattern.WARN,
@@ -183,4 +275,7 @@ public class FilmService extends BaseService<Film> {
             throw e;
         }
     }
+
+    private record PopularQuery(int count, PopularFilmsFilter filter) {
+    }
 }
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 
 import java.util.ArrayList;
@@ -14,9 +15,26 @@ import java.util.List;
 @Service
 public class GenreService extends BaseService<Genre> {
 
+    private final FilmStorage filmStorage;
+
     @Autowired
-    protected GenreService(GenreStorage storage) {
+    protected GenreService(GenreStorage storage, FilmStorage filmStorage) {
         super(storage);
+        this.filmStorage = filmStorage;
+    }
+
+    // Жанр встроен в закэшированные фильмы
+    @Override
+    public Genre update(Genre genre) {
+        Genre updated = super.update(genre);
+        filmStorage.evictCache();
+        return updated;
+    }
+
+    @Override
+    public void delete(long id) {
+        super.delete(id);
+        filmStorage.evictGenre(id);
     }
 
     @PostConstruct
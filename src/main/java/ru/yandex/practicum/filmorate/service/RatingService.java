@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.rating.RatingStorage;
 
 import java.util.ArrayList;
@@ -14,9 +15,26 @@ import java.util.List;
 @Service
 public class RatingService extends BaseService<Rating> {
 
+    private final FilmStorage filmStorage;
+
     @Autowired
-    protected RatingService(RatingStorage storage) {
+    protected RatingService(RatingStorage storage, FilmStorage filmStorage) {
         super(storage);
+        this.filmStorage = filmStorage;
+    }
+
+    // Рейтинг встроен в закэшированные фильмы
+    @Override
+    public Rating update(Rating rating) {
+        Rating updated = super.update(rating);
+        filmStorage.evictCache();
+        return updated;
+    }
+
+    @Override
+    public void delete(long id) {
+        super.delete(id);
+        filmStorage.evictRating(id);
     }
 
     @PostConstruct
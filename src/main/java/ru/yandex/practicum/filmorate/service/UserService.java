@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import ru.yandex.practicum.filmorate.util.logger.LoggerMessagePattern;
 
@@ -28,7 +29,7 @@ public class UserService extends BaseService<User> {
     public User create(User user) {
         log.debug(LoggerMessagePattern.DEBUG, "create", user);
         try {
-            if (userStorage.findEqual(user).isPresent()) {
+            if (userStorage.findIdByEmail(user.getEmail()).isPresent()) {
                 throw new DuplicatedDataException("Этот email уже используется");
             }
 
@@ -57,8 +58,8 @@ public class UserService extends BaseService<User> {
 
             fillEmptyFields(newUser, oldUserOptional.get());
 
-            Optional<User> userWithSameEmail = userStorage.findEqual(newUser);
-            if (userWithSameEmail.isPresent() && !Objects.equals(userWithSameEmail.get().getId(), newUser.getId())) {
+            Optional<Long> userIdWithSameEmail = userStorage.findIdByEmail(newUser.getEmail());
+            if (userIdWithSameEmail.isPresent() && !Objects.equals(userIdWithSameEmail.get(), newUser.getId())) {
                 throw new DuplicatedDataException("Этот email уже используется");
             }
 
@@ -88,13 +89,11 @@ public class UserService extends BaseService<User> {
     public List<User> findFriends(long id) {
         log.debug(LoggerMessagePattern.DEBUG, "find friends", "userId=%d".formatted(id));
         try {
-            Optional<User> userOptional = userStorage.findById(id);
-            if (userOptional.isEmpty()) {
+            List<User> friends = userStorage.findFriends(id);
+            if (friends.isEmpty() && userStorage.findById(id).isEmpty()) {
                 throw new NotFoundException("Пользователь не найден");
             }
-
-            Set<Long> friends = userOptional.get().getFriends();
-            return userStorage.findByIds(friends);
+            return friends;
         } catch (Exception e) {
             log.warn(
                     LoggerMessagePattern.WARN,
@@ -107,21 +106,77 @@ public class UserService extends BaseService<User> {
         }
     }
 
-    public List<User> findCommonFriends(long id1, long id2) {
-        log.debug(LoggerMessagePattern.DEBUG, "find common friends", "users %d and %d".formatted(id1, id2));
+    public int countFriends(long id) {
+        log.debug(LoggerMessagePattern.DEBUG, "count friends", "userId=%d".formatted(id));
+        try {
+            int count = userStorage.countFriends(id);
+            if (count == 0 && userStorage.findById(id).isEmpty()) {
+                throw new NotFoundException("Пользователь не найден");
+            }
+            return count;
+        } catch (Exception e) {
+            log.warn(LoggerMessagePattern.WARN, "count friends", "userId=%d".formatted(id), e.getMessage(), e.getClass());
+            throw e;
+        }
+    }
+
+    public List<User> findFriendSuggestions(long id, Optional<Integer> limit) {
+        log.debug(LoggerMessagePattern.DEBUG, "find friend suggestions", "userId=%d".formatted(id));
         try {
-            Optional<User> userOptional1 = userStorage.findById(id1);
-            Optional<User> userOptional2 = userStorage.findById(id2);
-            if (userOptional1.isEmpty() || userOptional2.isEmpty()) {
+            final int defaultLimit = 10;
+            List<User> suggestions = userStorage.findFriendSuggestions(id,
+                    boundedLimit("limit", limit, defaultLimit, FriendGraph.MAX_SUGGESTIONS));
+            if (suggestions.isEmpty() && userStorage.findById(id).isEmpty()) {
                 throw new NotFoundException("Пользователь не найден");
             }
+            return suggestions;
+        } catch (Exception e) {
+            log.warn(
+                    LoggerMessagePattern.WARN,
+                    "find friend suggestions",
+                    "userId=%d".formatted(id),
+                    e.getMessage(),
+                    e.getClass()
+            );
+            throw e;
+        }
+    }
 
-            Set<Long> friends1 = userOptional1.get().getFriends();
-            Set<Long> friends2 = userOptional2.get().getFriends();
+    public List<User> findFriendPath(long id, long otherId, Optional<Integer> maxLength) {
+        log.debug(LoggerMessagePattern.DEBUG, "find friend path", "users %d and %d".formatted(id, otherId));
+        try {
+            List<User> path = userStorage.findFriendPath(id, otherId,
+                    boundedLimit("maxLength", maxLength, FriendGraph.MAX_PATH_LENGTH, FriendGraph.MAX_PATH_LENGTH));
+            if (path.isEmpty()
+                    && (userStorage.findById(id).isEmpty() || userStorage.findById(otherId).isEmpty())) {
+                throw new NotFoundException("Пользователь не найден");
+            }
+            return path;
+        } catch (Exception e) {
+            log.warn(
+                    LoggerMessagePattern.WARN,
+                    "find friend path",
+                    "users %d and %d".formatted(id, otherId),
+                    e.getMessage(),
+                    e.getClass()
+            );
+            throw e;
+        }
+    }
 
-            Set<Long> commonFriends = new HashSet<>(friends1);
-            commonFriends.retainAll(friends2);
-            return userStorage.findByIds(commonFriends);
+    public List<User> findCommonFriends(long id1, long id2, Optional<Long> after, Optional<Integer> limit) {
+        log.debug(LoggerMessagePattern.DEBUG, "find common friends", "users %d and %d".formatted(id1, id2));
+        try {
+            final int defaultLimit = 100;
+            final int maxLimit = 1000;
+            List<User> commonFriends = userStorage.findCommonFriends(id1, id2, after.orElse(0L),
+                    boundedLimit("limit", limit, defaultLimit, maxLimit));
+            // непустой результат означает, что оба пользователя существуют, проверяем их только для пустого
+            if (commonFriends.isEmpty()
+                    && (userStorage.findById(id1).isEmpty() || userStorage.findById(id2).isEmpty())) {
+                throw new NotFoundException("Пользователь не найден");
+            }
+            return commonFriends;
         } catch (Exception e) {
             log.warn(
                     LoggerMessagePattern.WARN,
@@ -2,17 +2,20 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 
 import java.sql.PreparedStatement;
-import java.sql.Statement;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
 public abstract class DbBaseStorage<T> {
+    private static final String[] GENERATED_KEY_COLUMNS = {"id"};
 
     private final JdbcTemplate jdbcTemplate;
 
@@ -24,6 +27,10 @@ public abstract class DbBaseStorage<T> {
         return jdbcTemplate.query(query, mapper);
     }
 
+    protected List<T> findMany(String query, RowMapper<T> mapper, Object... params) {
+        return jdbcTemplate.query(query, mapper, params);
+    }
+
     protected List<T> findMany(String query, ResultSetExtractor<List<T>> extractor) {
         return jdbcTemplate.query(query, extractor);
     }
@@ -42,11 +49,20 @@ public abstract class DbBaseStorage<T> {
         return films == null || films.isEmpty() ? Optional.empty() : Optional.of(films.getFirst());
     }
 
+    protected <R> List<R> findColumn(String query, Class<R> type, Object... params) {
+        return jdbcTemplate.queryForList(query, type, params);
+    }
+
+    protected void forEachRow(String query, RowCallbackHandler handler, Object... params) {
+        jdbcTemplate.query(query, handler, params);
+    }
+
     protected long create(String query, Object... params) {
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
+            // ключом запрашивается только id: иначе вместе с ним возвращаются и вычисляемые столбцы
             PreparedStatement ps = connection
-                    .prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                    .prepareStatement(query, GENERATED_KEY_COLUMNS);
             for (int idx = 0; idx < params.length; idx++) {
                 ps.setObject(idx + 1, params[idx]);
             }
@@ -79,4 +95,24 @@ public abstract class DbBaseStorage<T> {
     protected int execute(String query, Object... params) {
         return jdbcTemplate.update(query, params);
     }
+
+    protected int[] batchUpdate(String query, List<Object[]> batchArgs) {
+        if (batchArgs.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(query, batchArgs);
+    }
+
+    protected void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
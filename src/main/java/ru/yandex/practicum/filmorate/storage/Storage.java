@@ -10,6 +10,8 @@ public interface Storage<T> {
 
     List<T> findAll();
 
+    List<T> findPage(long afterId, int limit);
+
     Optional<T> findById(long id);
 
     T create(T obj);
@@ -1,32 +1,48 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
-import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
 import ru.yandex.practicum.filmorate.storage.DbBaseStorage;
 
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Primary
 @Repository
 public class DbFilmStorage extends DbBaseStorage<Film> implements FilmStorage {
@@ -37,199 +53,582 @@ public class DbFilmStorage extends DbBaseStorage<Film> implements FilmStorage {
                    f.release_date,
                    f.duration,
                    f.rating_id,
-                   l.user_id AS liked_user_id,
-                   gf.genre_id,
-                   g.name AS genre_name,
+                   f.like_count,
                    r.name AS rating_name,
                    r.description AS rating_description
             FROM films AS f
-            LEFT JOIN likes AS l ON f.id = l.film_id
-            LEFT JOIN genre_film AS gf ON f.id = gf.film_id
-            LEFT JOIN genres AS g ON g.id = gf.genre_id
             LEFT JOIN ratings AS r ON r.id = f.rating_id
             """;
-    private static final String FIND_POPULAR_QUERY = """
-            SELECT sub.*,
-                   l.user_id AS liked_user_id,
-                   gf.genre_id AS genre_id,
-                   g.name AS genre_name,
-                   r.name AS rating_name,
-                   r.description AS rating_description
-            FROM (SELECT f.id,
-                         f.name,
-                         f.description,
-                         f.release_date,
-                         f.duration,
-                         f.rating_id,
-                         COUNT(l.film_id) AS liked_users_count
-                  FROM films AS f
-                  LEFT JOIN likes AS l ON f.id = l.film_id
-                  GROUP BY f.id
-                  ORDER BY liked_users_count DESC
-                  LIMIT ?) AS sub
-            LEFT JOIN likes AS l ON sub.id = l.film_id
-            LEFT JOIN genre_film AS gf ON sub.id = gf.film_id
-            LEFT JOIN genres AS g ON g.id = gf.genre_id
-            LEFT JOIN ratings AS r ON r.id = sub.rating_id
+    private static final String FIND_GENRES_QUERY = """
+            SELECT gf.film_id,
+                   g.id,
+                   g.name
+            FROM genre_film AS gf
+            JOIN genres AS g ON g.id = gf.genre_id
             """;
+    private static final String FIND_GENRES_BY_IDS_QUERY = FIND_GENRES_QUERY + "WHERE gf.film_id = ANY(?) ORDER BY gf.film_id, g.id";
+    private static final String FIND_GENRES_BY_RANGE_QUERY = FIND_GENRES_QUERY + "WHERE gf.film_id BETWEEN ? AND ? ORDER BY gf.film_id, g.id";
+    private static final String FIND_LIKES_COUNT_QUERY = "SELECT id, like_count, rating_id, release_date FROM films";
+    private static final String FIND_ALL_GENRE_IDS_QUERY = "SELECT film_id, genre_id FROM genre_film";
+    private static final String FIND_ALL_LIKES_QUERY = "SELECT film_id, user_id FROM likes";
+    private static final String FIND_LIKES_SINCE_QUERY = "SELECT film_id, created_at FROM likes WHERE created_at > ?";
+    private static final String FIND_POPULAR_IDS_QUERY = "SELECT id FROM films ORDER BY like_count DESC, id LIMIT ?";
+    private static final String FIND_ALL_ORDERED_QUERY = FIND_ALL_QUERY + "ORDER BY f.id";
+    private static final String FIND_PAGE_QUERY = FIND_ALL_QUERY + "WHERE f.id > ? ORDER BY f.id LIMIT ?";
     private static final String FIND_BY_ID_QUERY = FIND_ALL_QUERY + "WHERE f.id = ?";
+    private static final String FIND_BY_IDS_QUERY = FIND_ALL_QUERY + "WHERE f.id = ANY(?)";
+    // название нормализуется так же, как в вычисляемом столбце name_key
+    private static final String FIND_ID_BY_TITLE_QUERY = """
+            SELECT id
+            FROM films
+            WHERE name_key = LOWER(TRIM(REGEXP_REPLACE(?, '\\s+', ' ')))
+              AND release_date = ?
+            """;
     private static final String CREATE_QUERY = "INSERT INTO films(name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
     private static final String UPDATE_QUERY = "UPDATE films SET name = ?, description = ?, release_date = ?,  duration = ?, rating_id = ? WHERE id = ?";
     private static final String DELETE_QUERY = "DELETE FROM films WHERE id = ?";
     private static final String ADD_LIKE_QUERY = "INSERT INTO likes (film_id, user_id, created_at) VALUES(?, ?, ?)";
     private static final String DELETE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String DELETE_LIKE_RETURNING_QUERY =
+            "SELECT created_at FROM OLD TABLE (DELETE FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String FIND_LIKE_TIMES_QUERY = """
+            SELECT l.film_id,
+                   l.user_id,
+                   l.created_at
+            FROM UNNEST(CAST(? AS BIGINT ARRAY), CAST(? AS BIGINT ARRAY)) AS t(film_id, user_id)
+            JOIN likes AS l ON l.film_id = t.film_id AND l.user_id = t.user_id
+            """;
+    private static final String FIND_LIKES_QUERY = "SELECT user_id FROM likes WHERE film_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+    // Выборка последних лайкнувших для пачки фильмов одним запросом, независимо от числа лайков у фильма.
+    // Окно читает и сортирует все лайки фильмов пачки, см. QueryPlanTest.likesSampleShouldReadOnlyLikesOfBatch
+    private static final String FIND_LIKES_SAMPLE_BY_IDS_QUERY = """
+            SELECT film_id, user_id
+            FROM (SELECT film_id,
+                         user_id,
+                         ROW_NUMBER() OVER (PARTITION BY film_id ORDER BY created_at DESC NULLS LAST, user_id) AS num
+                  FROM likes
+                  WHERE film_id = ANY(?)) AS sample
+            WHERE num <= ?
+            ORDER BY film_id, num
+            """;
+    private static final String FIND_LIKES_SAMPLE_BY_RANGE_QUERY = """
+            SELECT film_id, user_id
+            FROM (SELECT film_id,
+                         user_id,
+                         ROW_NUMBER() OVER (PARTITION BY film_id ORDER BY created_at DESC NULLS LAST, user_id) AS num
+                  FROM likes
+                  WHERE film_id BETWEEN ? AND ?) AS sample
+            WHERE num <= ?
+            ORDER BY film_id, num
+            """;
+    private static final String INCREMENT_LIKE_COUNT_QUERY =
+            "SELECT like_count FROM FINAL TABLE (UPDATE films SET like_count = like_count + 1 WHERE id = ?)";
+    private static final String DECREMENT_LIKE_COUNT_QUERY =
+            "SELECT like_count FROM FINAL TABLE (UPDATE films SET like_count = like_count - 1 WHERE id = ?)";
+    private static final String ADD_LIKE_IF_ABSENT_QUERY = """
+            INSERT INTO likes (film_id, user_id, created_at)
+            SELECT f.id, u.id, ?
+            FROM films AS f
+            JOIN users AS u ON u.id = ?
+            WHERE f.id = ?
+              AND NOT EXISTS (SELECT 1 FROM likes AS l WHERE l.film_id = f.id AND l.user_id = u.id)
+            """;
+    private static final String ADD_LIKE_COUNT_QUERY = "UPDATE films SET like_count = like_count + ? WHERE id = ?";
+    private static final String FIND_LIKE_COUNT_QUERY = "SELECT like_count FROM films WHERE id = ?";
+    private static final String USER_EXISTS_QUERY = "SELECT COUNT(*) FROM users WHERE id = ?";
+    private static final String REPAIR_LIKE_COUNT_QUERY = """
+            UPDATE films AS f
+            SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id)
+            WHERE like_count <> (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id)
+            """;
     private static final String ADD_GENRE_QUERY = "INSERT INTO genre_film (film_id, genre_id) VALUES(?, ?)";
-    private static final String DELETE_ALL_GENRES_QUERY = "DELETE FROM genre_film WHERE film_id = ?";
+    private static final String DELETE_GENRE_QUERY = "DELETE FROM genre_film WHERE film_id = ? AND genre_id = ?";
+    private static final String FIND_GENRE_IDS_QUERY = "SELECT genre_id FROM genre_film WHERE film_id = ?";
+
+    private static final int HYDRATION_BATCH_SIZE = 1000;
+
+    private static final RowMapper<Film> filmRowMapper = new FilmRowMapper();
 
-    private static final ResultSetExtractor<List<Film>> filmListExtractor = new FilmListExtractor();
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSimilarityIndex similarityIndex;
+    private final FilmTrendingIndex trendingIndex;
+    private final FilmCache filmCache;
+    private final List<FilmStorageListener> listeners;
+    private final boolean repairLikeCountOnStartup;
+    private final int likesSampleSize;
 
     @Autowired
-    public DbFilmStorage(JdbcTemplate jdbcTemplate) {
+    public DbFilmStorage(JdbcTemplate jdbcTemplate,
+                         FilmPopularityIndex popularityIndex,
+                         FilmSimilarityIndex similarityIndex,
+                         FilmTrendingIndex trendingIndex,
+                         FilmCache filmCache,
+                         List<FilmStorageListener> listeners,
+                         @Value("${filmorate.films.repair-like-count-on-startup:false}") boolean repairLikeCountOnStartup,
+                         @Value("${filmorate.films.likes-sample-size:10}") int likesSampleSize) {
         super(jdbcTemplate);
+        this.popularityIndex = popularityIndex;
+        this.similarityIndex = similarityIndex;
+        this.trendingIndex = trendingIndex;
+        this.filmCache = filmCache;
+        this.listeners = listeners;
+        this.repairLikeCountOnStartup = repairLikeCountOnStartup;
+        this.likesSampleSize = likesSampleSize;
+    }
+
+    @PostConstruct
+    void init() {
+        if (repairLikeCountOnStartup) {
+            repairLikeCount();
+        } else {
+            rebuildPopularityIndex();
+        }
+        rebuildSimilarityIndex();
+        rebuildTrendingIndex();
+    }
+
+    // Пересчитывает films.like_count по таблице likes, например после массового импорта
+    public int repairLikeCount() {
+        int rowsRepaired = execute(REPAIR_LIKE_COUNT_QUERY);
+        log.info("Пересчитан счётчик лайков: исправлено {} фильмов", rowsRepaired);
+        filmCache.clear();
+        rebuildPopularityIndex();
+        return rowsRepaired;
+    }
+
+    public void rebuildPopularityIndex() {
+        Map<Long, Set<Long>> filmIdToGenreIds = new HashMap<>();
+        forEachRow(FIND_ALL_GENRE_IDS_QUERY, rs -> filmIdToGenreIds
+                .computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>())
+                .add(rs.getLong("genre_id")));
+        Map<Long, Long> filmIdToLikesCount = new HashMap<>();
+        Map<Long, FilmPopularityIndex.FilmFacets> filmIdToFacets = new HashMap<>();
+        forEachRow(FIND_LIKES_COUNT_QUERY, rs -> {
+            long filmId = rs.getLong("id");
+            long ratingId = rs.getLong("rating_id");
+            Date releaseDate = rs.getDate("release_date");
+            filmIdToLikesCount.put(filmId, rs.getLong("like_count"));
+            filmIdToFacets.put(filmId, new FilmPopularityIndex.FilmFacets(
+                    Set.copyOf(filmIdToGenreIds.getOrDefault(filmId, Set.of())),
+                    ratingId > 0 ? ratingId : null,
+                    releaseDate == null ? null : releaseDate.toLocalDate().getYear()));
+        });
+        popularityIndex.rebuild(filmIdToLikesCount, filmIdToFacets);
+        log.info("Индекс популярности фильмов построен: {} фильмов", filmIdToLikesCount.size());
+    }
+
+    public void rebuildSimilarityIndex() {
+        long[][] likes = {new long[1024], new long[1024]};
+        int[] count = {0};
+        forEachRow(FIND_ALL_LIKES_QUERY, rs -> {
+            if (count[0] == likes[0].length) {
+                likes[0] = Arrays.copyOf(likes[0], count[0] * 2);
+                likes[1] = Arrays.copyOf(likes[1], count[0] * 2);
+            }
+            likes[0][count[0]] = rs.getLong("film_id");
+            likes[1][count[0]] = rs.getLong("user_id");
+            count[0]++;
+        });
+        similarityIndex.rebuild(likes[0], likes[1], count[0]);
+        log.info("Индекс похожих фильмов построен: {} лайков", count[0]);
+    }
+
+    // Читаются только лайки за самое длинное окно, по индексу на likes.created_at
+    public void rebuildTrendingIndex() {
+        Instant since = Instant.now().minus(Arrays.stream(TrendingWindow.values())
+                .map(TrendingWindow::getDuration)
+                .max(Duration::compareTo)
+                .orElseThrow());
+        long[][] likes = {new long[1024], new long[1024]};
+        int[] count = {0};
+        forEachRow(FIND_LIKES_SINCE_QUERY, rs -> {
+            if (count[0] == likes[0].length) {
+                likes[0] = Arrays.copyOf(likes[0], count[0] * 2);
+                likes[1] = Arrays.copyOf(likes[1], count[0] * 2);
+            }
+            likes[0][count[0]] = rs.getLong("film_id");
+            likes[1][count[0]] = rs.getTimestamp("created_at").getTime();
+            count[0]++;
+        }, Timestamp.from(since));
+        trendingIndex.rebuild(likes[0], likes[1], count[0]);
+        log.info("Счётчики лайков по времени построены: {} лайков", count[0]);
+    }
+
+    public boolean checkPopularityIndex(int count) {
+        List<Long> expected = findColumn(FIND_POPULAR_IDS_QUERY, Long.class, count);
+        List<Long> actual = popularityIndex.findTop(count);
+        if (expected.equals(actual)) {
+            return true;
+        }
+        log.warn("Индекс популярности фильмов расходится с БД: ожидалось {}, получено {}", expected, actual);
+        return false;
     }
 
     @Override
     public List<Film> findAll() {
-        return findMany(FIND_ALL_QUERY, filmListExtractor);
+        return hydrate(findMany(FIND_ALL_ORDERED_QUERY, filmRowMapper));
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return hydrate(findMany(FIND_PAGE_QUERY, filmRowMapper, afterId, limit));
+    }
+
+    @Override
+    public List<Film> findPopular(int count, PopularFilmsFilter filter) {
+        return findByIdsInOrder(popularityIndex.findTop(count, filter));
+    }
+
+    @Override
+    public List<Film> findSimilar(long filmId, int limit) {
+        return findByIdsInOrder(Arrays.stream(similarityIndex.findSimilarIds(filmId, limit)).boxed().toList());
+    }
+
+    @Override
+    public List<Film> findRecommendations(long userId, int limit) {
+        return findByIdsInOrder(Arrays.stream(similarityIndex.recommendIds(userId, limit)).boxed().toList());
     }
 
     @Override
-    public List<Film> findPopular(Comparator<Film> comparator, int count) {
-        return Objects.requireNonNull(findMany(FIND_POPULAR_QUERY, filmListExtractor, count)).stream()
-                .sorted(comparator)
+    public List<Film> findTrending(TrendingWindow window, int count) {
+        return findByIdsInOrder(trendingIndex.findTop(window, count));
+    }
+
+    private List<Film> findByIdsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Film> idToFilm = new HashMap<>();
+        for (Film film : hydrate(findMany(FIND_BY_IDS_QUERY, filmRowMapper, (Object) ids.toArray(new Long[0])))) {
+            idToFilm.put(film.getId(), film);
+        }
+        return ids.stream()
+                .map(idToFilm::get)
+                .filter(Objects::nonNull)
                 .toList();
     }
 
     @Override
     public Optional<Film> findById(long id) {
-        return findOne(FIND_BY_ID_QUERY, filmListExtractor, id);
+        return filmCache.get(id, this::loadById);
+    }
+
+    // В обход кэша: внутри транзакции записи кэш не должен получить незакоммиченный фильм
+    private Optional<Film> loadById(long id) {
+        Optional<Film> film = findOne(FIND_BY_ID_QUERY, filmRowMapper, id);
+        film.ifPresent(f -> hydrate(List.of(f)));
+        return film;
     }
 
     @Override
     @Transactional
     public Film create(Film film) {
-        long filmId = super.create(CREATE_QUERY,
-                film.getName(),
-                film.getDescription(),
-                Date.valueOf(film.getReleaseDate()),
-                film.getDuration().toMinutes(),
-                film.getMpa() == null ? 0 : film.getMpa().getId());
+        long filmId;
+        try {
+            filmId = super.create(CREATE_QUERY,
+                    film.getName(),
+                    film.getDescription(),
+                    Date.valueOf(film.getReleaseDate()),
+                    film.getDuration().toMinutes(),
+                    film.getMpa() == null ? 0 : film.getMpa().getId());
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Такой фильм уже существует");
+        }
 
         if (filmId > 0) {
             film.setId(filmId);
 
             if (film.getGenres() != null) {
-                Set<Genre> genresSet = new LinkedHashSet<>(film.getGenres());
-                for (Genre genre : genresSet) {
-                    addGenre(filmId, genre.getId());
-                }
+                addGenres(filmId, genreIds(film));
             }
         }
 
-        return findById(filmId).orElse(null);
+        return notifySaved(loadById(filmId).orElse(null));
     }
 
     @Override
     @Transactional
     public Film update(Film film) {
         long filmId = film.getId();
-        super.update(UPDATE_QUERY,
-                film.getName(),
-                film.getDescription(),
-                film.getReleaseDate(),
-                film.getDuration().toMinutes(),
-                film.getMpa().getId(),
-                filmId);
+        try {
+            super.update(UPDATE_QUERY,
+                    film.getName(),
+                    film.getDescription(),
+                    film.getReleaseDate(),
+                    film.getDuration().toMinutes(),
+                    film.getMpa().getId(),
+                    filmId);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Такой фильм уже существует");
+        }
 
+        // Меняются только строки жанров, которых нет в новом или старом наборе
         if (film.getGenres() != null) {
-            deleteAllGenres(filmId);
-            Set<Genre> genresSet = new LinkedHashSet<>(film.getGenres());
-            for (Genre genre : genresSet) {
-                addGenre(filmId, genre.getId());
-            }
+            Set<Long> newGenreIds = genreIds(film);
+            Set<Long> oldGenreIds = new HashSet<>(findColumn(FIND_GENRE_IDS_QUERY, Long.class, filmId));
+            deleteGenres(filmId, oldGenreIds.stream().filter(id -> !newGenreIds.contains(id)).toList());
+            addGenres(filmId, newGenreIds.stream().filter(id -> !oldGenreIds.contains(id)).toList());
         }
 
-        return findById(filmId).orElse(null);
+        return notifySaved(loadById(filmId).orElse(null));
+    }
+
+    @Override
+    public void evictCache() {
+        filmCache.clear();
+    }
+
+    @Override
+    public void evictGenre(long genreId) {
+        filmCache.clear();
+        popularityIndex.onGenreDeleted(genreId);
+    }
+
+    @Override
+    public void evictRating(long ratingId) {
+        filmCache.clear();
+        popularityIndex.onRatingDeleted(ratingId);
     }
 
     @Override
     public void delete(long id) {
         super.delete(DELETE_QUERY, id);
+        afterCommit(() -> listeners.forEach(listener -> listener.onFilmDeleted(id)));
     }
 
     @Override
     public Optional<Film> findEqual(Film film) {
-        return Optional.empty();
+        if (film.getName() == null || film.getReleaseDate() == null) {
+            return Optional.empty();
+        }
+        return findColumn(FIND_ID_BY_TITLE_QUERY, Long.class, film.getName(), Date.valueOf(film.getReleaseDate()))
+                .stream()
+                .findFirst()
+                .flatMap(this::findById);
     }
 
+    // Повтор и отсутствующий фильм или пользователь определяются ограничениями таблицы likes,
+    // а не предварительными проверками: проверка и вставка не могут разойтись при параллельных запросах
     @Override
-    public Film addLike(long filmId, long userId) {
-        execute(ADD_LIKE_QUERY, filmId, userId, Instant.now());
-        return findById(filmId).orElse(null);
+    @Transactional
+    public LikeResult addLike(long filmId, long userId) {
+        Instant createdAt = Instant.now();
+        try {
+            execute(ADD_LIKE_QUERY, filmId, userId, createdAt);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Лайк от пользователя #%d добавлен ранее".formatted(userId));
+        } catch (DataIntegrityViolationException e) {
+            throw likeError(filmId, userId, e);
+        }
+        long likesCount = findColumn(INCREMENT_LIKE_COUNT_QUERY, Long.class, filmId).getFirst();
+        afterCommit(() -> listeners.forEach(listener -> listener.onLikeAdded(filmId, userId, createdAt)));
+        return new LikeResult(filmId, userId, likesCount);
     }
 
     @Override
-    public Film deleteLike(long filmId, long userId) {
-        execute(DELETE_LIKE_QUERY, filmId, userId);
-        return findById(filmId).orElse(null);
+    @Transactional
+    public LikeResult deleteLike(long filmId, long userId) {
+        List<Timestamp> deleted = findColumn(DELETE_LIKE_RETURNING_QUERY, Timestamp.class, filmId, userId);
+        if (deleted.isEmpty()) {
+            throw likeError(filmId, userId,
+                    new NotFoundException("Лайк от пользователя #%d не найден".formatted(userId)));
+        }
+        Instant likedAt = likedAt(deleted.getFirst());
+        long likesCount = findColumn(DECREMENT_LIKE_COUNT_QUERY, Long.class, filmId).getFirst();
+        afterCommit(() -> listeners.forEach(listener -> listener.onLikeDeleted(filmId, userId, likedAt)));
+        return new LikeResult(filmId, userId, likesCount);
     }
 
-    public void addGenre(long filmId, long genreId) {
-        execute(ADD_GENRE_QUERY, filmId, genreId);
+    // Применяет события отложенной записи одной транзакцией. Для каждой пары фильм-пользователь действует
+    // последнее событие; повтор уже применённого события и события удалённых фильмов и пользователей ничего не меняют
+    @Transactional
+    public void applyLikeEvents(List<LikeEvent> events) {
+        Map<LikeKey, LikeEvent> lastEvents = new LinkedHashMap<>();
+        events.forEach(event -> lastEvents.put(new LikeKey(event.filmId(), event.userId()), event));
+        List<LikeEvent> likes = lastEvents.values().stream().filter(LikeEvent::liked).toList();
+        List<LikeEvent> unlikes = lastEvents.values().stream().filter(event -> !event.liked()).toList();
+        Map<LikeKey, Instant> likedAt = findLikeTimes(unlikes);
+
+        int[] inserted = batchUpdate(ADD_LIKE_IF_ABSENT_QUERY, likes.stream()
+                .map(event -> new Object[]{event.createdAt(), event.userId(), event.filmId()})
+                .toList());
+        int[] deleted = batchUpdate(DELETE_LIKE_QUERY, unlikes.stream()
+                .map(event -> new Object[]{event.filmId(), event.userId()})
+                .toList());
+
+        Map<Long, Long> filmIdToDelta = new HashMap<>();
+        List<LikeEvent> applied = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                filmIdToDelta.merge(likes.get(i).filmId(), 1L, Long::sum);
+                applied.add(likes.get(i));
+            }
+        }
+        for (int i = 0; i < deleted.length; i++) {
+            if (deleted[i] > 0) {
+                filmIdToDelta.merge(unlikes.get(i).filmId(), -1L, Long::sum);
+                applied.add(unlikes.get(i));
+            }
+        }
+        batchUpdate(ADD_LIKE_COUNT_QUERY, filmIdToDelta.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList());
+
+        afterCommit(() -> applied.forEach(event -> listeners.forEach(listener -> {
+            if (event.liked()) {
+                listener.onLikeAdded(event.filmId(), event.userId(), event.createdAt());
+            } else {
+                listener.onLikeDeleted(event.filmId(), event.userId(),
+                        likedAt.getOrDefault(new LikeKey(event.filmId(), event.userId()), Instant.EPOCH));
+            }
+        })));
     }
 
-    public void deleteAllGenres(long filmId) {
-        execute(DELETE_ALL_GENRES_QUERY, filmId);
+    private record LikeKey(long filmId, long userId) {
     }
 
-    private static class FilmListExtractor implements ResultSetExtractor<List<Film>> {
+    // Время удаляемых лайков нужно слушателям; пары передаются двумя массивами, поиск идёт по первичному ключу
+    private Map<LikeKey, Instant> findLikeTimes(List<LikeEvent> events) {
+        Map<LikeKey, Instant> likedAt = new HashMap<>();
+        if (events.isEmpty()) {
+            return likedAt;
+        }
+        Long[] filmIds = events.stream().map(LikeEvent::filmId).toArray(Long[]::new);
+        Long[] userIds = events.stream().map(LikeEvent::userId).toArray(Long[]::new);
+        forEachRow(FIND_LIKE_TIMES_QUERY,
+                rs -> likedAt.put(new LikeKey(rs.getLong("film_id"), rs.getLong("user_id")),
+                        likedAt(rs.getTimestamp("created_at"))),
+                filmIds, userIds);
+        return likedAt;
+    }
 
-        @Override
-        public List<Film> extractData(ResultSet resultSet) throws SQLException, DataAccessException {
-            Map<Long, Film> idToFilm = new HashMap<>();
+    // Лайки без времени считаются давними и в окна по времени не попадают
+    private static Instant likedAt(Timestamp createdAt) {
+        return createdAt == null ? Instant.EPOCH : createdAt.toInstant();
+    }
 
-            while (resultSet.next()) {
-                Long filmId = resultSet.getLong("id");
-                if (!idToFilm.containsKey(filmId)) {
-                    Film film = Film.builder()
-                            .id(filmId)
-                            .name(resultSet.getString("name"))
-                            .description(resultSet.getString("description"))
-                            .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                            .duration(Duration.ofMinutes(resultSet.getLong("duration")))
-                            .likes(new LinkedHashSet<>())
-                            .genres(new LinkedHashSet<>())
-                            .build();
-                    idToFilm.put(filmId, film);
-                }
+    // Причина уточняется только на пути ошибки, успешный запрос обходится без этих проверок
+    private RuntimeException likeError(long filmId, long userId, RuntimeException fallback) {
+        if (findColumn(FIND_LIKE_COUNT_QUERY, Long.class, filmId).isEmpty()) {
+            return new NotFoundException("Фильм не найден");
+        }
+        if (findColumn(USER_EXISTS_QUERY, Integer.class, userId).getFirst() == 0) {
+            return new NotFoundException("Пользователь не найден");
+        }
+        return fallback;
+    }
 
-                Film film = idToFilm.get(filmId);
-                long likedUserId = resultSet.getLong("liked_user_id");
-                if (likedUserId > 0) {
-                    film.getLikes().add(likedUserId);
-                }
+    public boolean userExists(long userId) {
+        return findColumn(USER_EXISTS_QUERY, Integer.class, userId).getFirst() > 0;
+    }
 
-                long ratingId = resultSet.getLong("rating_id");
-                if (ratingId > 0) {
-                    Rating rating = Rating.builder()
-                            .id(ratingId)
-                            .name(resultSet.getString("rating_name"))
-                            .description(resultSet.getString("rating_description"))
-                            .build();
-                    film.setMpa(rating);
-                }
+    @Override
+    public List<Long> findLikes(long filmId, long afterUserId, int limit) {
+        return findColumn(FIND_LIKES_QUERY, Long.class, filmId, afterUserId, limit);
+    }
+
+    private static Set<Long> genreIds(Film film) {
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private void addGenres(long filmId, Collection<Long> genreIds) {
+        batchUpdate(ADD_GENRE_QUERY, genreIds.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList());
+    }
 
-                long genreId = resultSet.getLong("genre_id");
-                if (genreId > 0) {
-                    Genre genre = Genre.builder()
-                            .id(genreId)
-                            .name(resultSet.getString("genre_name"))
-                            .build();
-                    film.getGenres().add(genre);
+    private void deleteGenres(long filmId, Collection<Long> genreIds) {
+        batchUpdate(DELETE_GENRE_QUERY, genreIds.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList());
+    }
+
+    // Жанры и выборка лайков загружаются отдельными запросами по пачкам фильмов, без декартова произведения JOIN.
+    // Плотная пачка (например, страница по id) читается диапазоном по индексу, разреженная - списком id
+    private List<Film> hydrate(List<Film> films) {
+        for (int from = 0; from < films.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Film> batch = films.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, films.size()));
+            Map<Long, Film> idToFilm = new HashMap<>();
+            long minId = Long.MAX_VALUE;
+            long maxId = Long.MIN_VALUE;
+            for (Film film : batch) {
+                idToFilm.put(film.getId(), film);
+                minId = Math.min(minId, film.getId());
+                maxId = Math.max(maxId, film.getId());
+            }
+            boolean dense = maxId - minId < 2L * batch.size();
+
+            RowCallbackHandler genreHandler = rs -> {
+                Film film = idToFilm.get(rs.getLong("film_id"));
+                if (film != null) {
+                    film.getGenres().add(Genre.builder()
+                            .id(rs.getLong("id"))
+                            .name(rs.getString("name"))
+                            .build());
                 }
+            };
+            if (dense) {
+                forEachRow(FIND_GENRES_BY_RANGE_QUERY, genreHandler, minId, maxId);
+            } else {
+                forEachRow(FIND_GENRES_BY_IDS_QUERY, genreHandler, (Object) idToFilm.keySet().toArray(new Long[0]));
             }
 
-            return new ArrayList<>(idToFilm.values());
+            if (likesSampleSize > 0) {
+                fillLikesSample(idToFilm, dense, minId, maxId);
+            }
+        }
+        return films;
+    }
+
+    private void fillLikesSample(Map<Long, Film> idToFilm, boolean dense, long minId, long maxId) {
+        RowCallbackHandler likeHandler = rs -> {
+            Film film = idToFilm.get(rs.getLong("film_id"));
+            if (film != null) {
+                film.getLikes().add(rs.getLong("user_id"));
+            }
+        };
+        if (dense) {
+            forEachRow(FIND_LIKES_SAMPLE_BY_RANGE_QUERY, likeHandler, minId, maxId, likesSampleSize);
+        } else {
+            forEachRow(FIND_LIKES_SAMPLE_BY_IDS_QUERY, likeHandler, idToFilm.keySet().toArray(new Long[0]), likesSampleSize);
+        }
+    }
+
+    private Film notifySaved(Film film) {
+        if (film != null) {
+            afterCommit(() -> listeners.forEach(listener -> listener.onFilmSaved(film)));
+        }
+        return film;
+    }
+
+    private static class FilmRowMapper implements RowMapper<Film> {
+
+        @Override
+        public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Film film = Film.builder()
+                    .id(rs.getLong("id"))
+                    .name(rs.getString("name"))
+                    .description(rs.getString("description"))
+                    .releaseDate(rs.getDate("release_date").toLocalDate())
+                    .duration(Duration.ofMinutes(rs.getLong("duration")))
+                    .likesCount(rs.getLong("like_count"))
+                    .likes(new LinkedHashSet<>())
+                    .genres(new LinkedHashSet<>())
+                    .build();
+
+            long ratingId = rs.getLong("rating_id");
+            if (ratingId > 0) {
+                film.setMpa(Rating.builder()
+                        .id(ratingId)
+                        .name(rs.getString("rating_name"))
+                        .description(rs.getString("rating_description"))
+                        .build());
+            }
+            return film;
         }
     }
 }
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.cache.LruCache;
+
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+/**
+ * Кэш фильмов по id для {@link DbFilmStorage#findById}. Изменение фильма, его жанров или лайков удаляет из кэша
+ * только этот фильм; события приходят после коммита, так что следующее чтение увидит новые данные.
+ * Кэш хранит собственную копию фильма и каждому читателю отдаёт отдельную копию, поэтому изменения
+ * полученного фильма, в том числе его лайков и жанров, не попадают ни в кэш, ни к другим читателям.
+ */
+@Slf4j
+@Component
+public class FilmCache implements FilmStorageListener {
+    private final LruCache<Film> cache;
+
+    @Autowired
+    public FilmCache(@Value("${filmorate.films.cache.enabled:true}") boolean enabled,
+                     @Value("${filmorate.films.cache.max-size:10000}") int maxSize) {
+        this.cache = new LruCache<>(enabled ? maxSize : 0);
+    }
+
+    public Optional<Film> get(long filmId, LongFunction<Optional<Film>> loader) {
+        if (!cache.isEnabled()) {
+            return loader.apply(filmId);
+        }
+        return cache.get(filmId, id -> loader.apply(id).map(Film::copy)).map(Film::copy);
+    }
+
+    // Сбрасывает все фильмы, например после изменения жанра или рейтинга, которые в них встроены
+    public void clear() {
+        cache.clear();
+    }
+
+    public LruCache.Stats stats() {
+        return cache.stats();
+    }
+
+    @PreDestroy
+    void logStats() {
+        if (cache.isEnabled()) {
+            LruCache.Stats stats = cache.stats();
+            log.info("Кэш фильмов: попаданий {}, промахов {} ({}% попаданий), вытеснено {}, в кэше {}",
+                    stats.hits(), stats.misses(), Math.round(stats.hitRate() * 100), stats.evictions(), stats.size());
+        }
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        cache.invalidate(film.getId());
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        cache.invalidate(filmId);
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        cache.invalidate(filmId);
+    }
+
+    @Override
+    public void onLikeDeleted(long filmId, long userId) {
+        cache.invalidate(filmId);
+    }
+}
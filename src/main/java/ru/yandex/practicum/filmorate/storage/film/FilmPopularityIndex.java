@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.util.collection.Leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Рейтинг фильмов по числу лайков: общий и отдельные по жанру, рейтингу MPA и году выхода.
+ * Отфильтрованный топ читается из рейтинга самого узкого из заданных фильтров, остальные фильтры
+ * проверяются по признакам фильма, поэтому фильтрация идёт до LIMIT, а не после.
+ */
+@Component
+public class FilmPopularityIndex implements FilmStorageListener {
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final Map<Long, Leaderboard> genreLeaderboards = new ConcurrentHashMap<>();
+    private final Map<Long, Leaderboard> ratingLeaderboards = new ConcurrentHashMap<>();
+    private final Map<Long, Leaderboard> yearLeaderboards = new ConcurrentHashMap<>();
+    private final Map<Long, FilmFacets> filmFacets = new ConcurrentHashMap<>();
+
+    // Признаки фильма, по которым ведутся отдельные рейтинги; ratingId и year могут быть null
+    public record FilmFacets(Set<Long> genreIds, Long ratingId, Integer year) {
+
+        public static FilmFacets of(Film film) {
+            Set<Long> genreIds = film.getGenres() == null ? Set.of() : film.getGenres().stream()
+                    .map(Genre::getId)
+                    .collect(Collectors.toUnmodifiableSet());
+            return new FilmFacets(genreIds,
+                    film.getMpa() == null ? null : film.getMpa().getId(),
+                    film.getReleaseDate() == null ? null : film.getReleaseDate().getYear());
+        }
+
+        private boolean matches(PopularFilmsFilter filter) {
+            return (filter.genreId() == null || genreIds.contains(filter.genreId()))
+                    && (filter.mpaId() == null || filter.mpaId().equals(ratingId))
+                    && (filter.year() == null || filter.year().equals(year));
+        }
+    }
+
+    public synchronized void rebuild(Map<Long, Long> filmIdToLikesCount, Map<Long, FilmFacets> filmIdToFacets) {
+        leaderboard.reset(filmIdToLikesCount);
+        genreLeaderboards.clear();
+        ratingLeaderboards.clear();
+        yearLeaderboards.clear();
+        filmFacets.clear();
+        filmIdToFacets.forEach((filmId, facets) -> {
+            filmFacets.put(filmId, facets);
+            facetLeaderboards(facets, true)
+                    .forEach(facetLeaderboard -> facetLeaderboard.set(filmId, filmIdToLikesCount.getOrDefault(filmId, 0L)));
+        });
+    }
+
+    public List<Long> findTop(int count) {
+        return leaderboard.top(count);
+    }
+
+    public List<Long> findTop(int count, PopularFilmsFilter filter) {
+        if (filter.isEmpty()) {
+            return findTop(count);
+        }
+        List<Leaderboard> candidates = new ArrayList<>();
+        if (filter.genreId() != null) {
+            candidates.add(genreLeaderboards.get(filter.genreId()));
+        }
+        if (filter.mpaId() != null) {
+            candidates.add(ratingLeaderboards.get(filter.mpaId()));
+        }
+        if (filter.year() != null) {
+            candidates.add(yearLeaderboards.get(filter.year().longValue()));
+        }
+        // фильмов с таким жанром, рейтингом или годом нет
+        if (candidates.contains(null)) {
+            return List.of();
+        }
+        Leaderboard narrowest = candidates.stream()
+                .min(Comparator.comparingInt(Leaderboard::size))
+                .orElseThrow();
+        if (candidates.size() == 1) {
+            return narrowest.top(count);
+        }
+        return narrowest.top(count, filmId -> {
+            FilmFacets facets = filmFacets.get(filmId);
+            return facets != null && facets.matches(filter);
+        });
+    }
+
+    public long getLikesCount(long filmId) {
+        return leaderboard.score(filmId);
+    }
+
+    public boolean contains(long filmId) {
+        return leaderboard.contains(filmId);
+    }
+
+    // Смена жанров, рейтинга или даты выхода переносит фильм между рейтингами с текущим числом лайков
+    @Override
+    public synchronized void onFilmSaved(Film film) {
+        long filmId = film.getId();
+        if (!leaderboard.contains(filmId)) {
+            leaderboard.set(filmId, 0);
+        }
+        FilmFacets facets = FilmFacets.of(film);
+        FilmFacets oldFacets = filmFacets.put(filmId, facets);
+        if (facets.equals(oldFacets)) {
+            return;
+        }
+        if (oldFacets != null) {
+            facetLeaderboards(oldFacets, false).forEach(facetLeaderboard -> facetLeaderboard.remove(filmId));
+        }
+        long likesCount = leaderboard.score(filmId);
+        facetLeaderboards(facets, true).forEach(facetLeaderboard -> facetLeaderboard.set(filmId, likesCount));
+    }
+
+    @Override
+    public synchronized void onFilmDeleted(long filmId) {
+        leaderboard.remove(filmId);
+        FilmFacets facets = filmFacets.remove(filmId);
+        if (facets != null) {
+            facetLeaderboards(facets, false).forEach(facetLeaderboard -> facetLeaderboard.remove(filmId));
+        }
+    }
+
+    @Override
+    public synchronized void onLikeAdded(long filmId, long userId) {
+        addLikes(filmId, 1);
+    }
+
+    @Override
+    public synchronized void onLikeDeleted(long filmId, long userId) {
+        addLikes(filmId, -1);
+    }
+
+    // Жанр удалён вместе со связями с фильмами: его рейтинг больше не нужен, у фильмов он убирается из признаков
+    public synchronized void onGenreDeleted(long genreId) {
+        genreLeaderboards.remove(genreId);
+        filmFacets.replaceAll((filmId, facets) -> facets.genreIds().contains(genreId)
+                ? new FilmFacets(facets.genreIds().stream()
+                        .filter(id -> id != genreId)
+                        .collect(Collectors.toUnmodifiableSet()), facets.ratingId(), facets.year())
+                : facets);
+    }
+
+    // Рейтинг MPA удалён, у его фильмов rating_id стал NULL
+    public synchronized void onRatingDeleted(long ratingId) {
+        ratingLeaderboards.remove(ratingId);
+        filmFacets.replaceAll((filmId, facets) -> Long.valueOf(ratingId).equals(facets.ratingId())
+                ? new FilmFacets(facets.genreIds(), null, facets.year())
+                : facets);
+    }
+
+    private void addLikes(long filmId, long delta) {
+        leaderboard.add(filmId, delta);
+        FilmFacets facets = filmFacets.get(filmId);
+        if (facets != null) {
+            facetLeaderboards(facets, false).forEach(facetLeaderboard -> facetLeaderboard.add(filmId, delta));
+        }
+    }
+
+    // Рейтинги, в которые входит фильм с такими признаками; create - создавать недостающие
+    private List<Leaderboard> facetLeaderboards(FilmFacets facets, boolean create) {
+        List<Leaderboard> leaderboards = new ArrayList<>();
+        facets.genreIds().forEach(genreId -> addFacet(leaderboards, genreLeaderboards, genreId, create));
+        if (facets.ratingId() != null) {
+            addFacet(leaderboards, ratingLeaderboards, facets.ratingId(), create);
+        }
+        if (facets.year() != null) {
+            addFacet(leaderboards, yearLeaderboards, facets.year().longValue(), create);
+        }
+        return leaderboards;
+    }
+
+    private static void addFacet(List<Leaderboard> leaderboards, Map<Long, Leaderboard> facetLeaderboards,
+                                 long key, boolean create) {
+        Leaderboard facetLeaderboard = create
+                ? facetLeaderboards.computeIfAbsent(key, id -> new Leaderboard())
+                : facetLeaderboards.get(key);
+        if (facetLeaderboard != null) {
+            leaderboards.add(facetLeaderboard);
+        }
+    }
+}
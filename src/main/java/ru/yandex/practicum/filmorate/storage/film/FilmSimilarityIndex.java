@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.collection.LongCounter;
+import ru.yandex.practicum.filmorate.util.collection.LongGraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Разреженная матрица совместных лайков: для пары фильмов - число пользователей, лайкнувших оба.
+ * Лайк пользователя меняет строки всех фильмов, которые он лайкнул раньше, за O(число его лайков).
+ * Топ похожих фильмов хранится готовым и пересчитывается из строки матрицы только после её изменения.
+ */
+@Component
+public class FilmSimilarityIndex implements FilmStorageListener {
+    public static final int MAX_SIMILAR = 100;
+    // сколько лайкнутых фильмов пользователя учитывается при подборе рекомендаций
+    private static final int MAX_RECOMMENDATION_SOURCES = 1000;
+    private static final long[] EMPTY = new long[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // ребро filmId -> userId; у вершины фильма используются только исходящие рёбра, у вершины пользователя -
+    // только входящие, поэтому совпадающие id фильма и пользователя друг другу не мешают
+    private LongGraph likes = new LongGraph();
+    private Map<Long, LongCounter> cooccurrence = new HashMap<>();
+    private volatile Map<Long, long[]> topSimilar = new ConcurrentHashMap<>();
+
+    /**
+     * Строит индекс заново по лайкам filmIds[i] - userIds[i], i < count. Строки матрицы независимы
+     * и считаются параллельно в общем пуле fork-join.
+     */
+    public void rebuild(long[] filmIds, long[] userIds, int count) {
+        LongGraph loaded = new LongGraph();
+        loaded.load(filmIds, userIds, count);
+        long[] distinctFilmIds = Arrays.stream(filmIds, 0, count).distinct().toArray();
+        Map<Long, LongCounter> rows = new ConcurrentHashMap<>();
+        Map<Long, long[]> tops = new ConcurrentHashMap<>();
+        Arrays.stream(distinctFilmIds).parallel().forEach(filmId -> {
+            LongCounter row = countRow(loaded, filmId);
+            rows.put(filmId, row);
+            tops.put(filmId, row.top(MAX_SIMILAR));
+        });
+
+        lock.writeLock().lock();
+        try {
+            likes = loaded;
+            cooccurrence = new HashMap<>(rows);
+            topSimilar = tops;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static LongCounter countRow(LongGraph likes, long filmId) {
+        LongCounter row = new LongCounter(16);
+        for (long userId : likes.successors(filmId)) {
+            for (long otherFilmId : likes.predecessors(userId)) {
+                if (otherFilmId != filmId) {
+                    row.increment(otherFilmId);
+                }
+            }
+        }
+        return row;
+    }
+
+    // До limit фильмов, чаще всего лайкнутых вместе с filmId, по убыванию числа общих пользователей
+    public long[] findSimilarIds(long filmId, int limit) {
+        long[] similarIds = similarIds(filmId);
+        return similarIds.length <= limit ? similarIds : Arrays.copyOf(similarIds, limit);
+    }
+
+    /**
+     * До limit фильмов, которые userId ещё не лайкнул. Оценка фильма - сумма совместных лайков с фильмами
+     * пользователя по готовым топам похожих, без обхода лайков других пользователей.
+     */
+    public long[] recommendIds(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] likedIds = likes.predecessors(userId);
+            LongCounter scores = new LongCounter(MAX_SIMILAR);
+            for (int i = 0; i < Math.min(likedIds.length, MAX_RECOMMENDATION_SOURCES); i++) {
+                LongCounter row = cooccurrence.get(likedIds[i]);
+                for (long similarId : similarIds(likedIds[i])) {
+                    if (Arrays.binarySearch(likedIds, similarId) < 0) {
+                        scores.add(similarId, row.get(similarId));
+                    }
+                }
+            }
+            return scores.top(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasLike(long filmId, long userId) {
+        lock.readLock().lock();
+        try {
+            return likes.hasEdge(filmId, userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Топ пересчитывается под блокировкой чтения: запись не может вклиниться между расчётом и сохранением
+    private long[] similarIds(long filmId) {
+        long[] cached = topSimilar.get(filmId);
+        if (cached != null) {
+            return cached;
+        }
+        lock.readLock().lock();
+        try {
+            LongCounter row = cooccurrence.get(filmId);
+            long[] similarIds = row == null ? EMPTY : row.top(MAX_SIMILAR);
+            topSimilar.put(filmId, similarIds);
+            return similarIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        lock.writeLock().lock();
+        try {
+            for (long userId : likes.successors(filmId)) {
+                removeLike(filmId, userId);
+            }
+            cooccurrence.remove(filmId);
+            topSimilar.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            if (likes.addEdge(filmId, userId)) {
+                updateRows(filmId, userId, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onLikeDeleted(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            removeLike(filmId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLike(long filmId, long userId) {
+        if (likes.removeEdge(filmId, userId)) {
+            updateRows(filmId, userId, -1);
+        }
+    }
+
+    private void updateRows(long filmId, long userId, int delta) {
+        for (long otherFilmId : likes.predecessors(userId)) {
+            if (otherFilmId != filmId) {
+                cooccurrence.computeIfAbsent(filmId, id -> new LongCounter(16)).add(otherFilmId, delta);
+                cooccurrence.computeIfAbsent(otherFilmId, id -> new LongCounter(16)).add(filmId, delta);
+                topSimilar.remove(otherFilmId);
+            }
+        }
+        topSimilar.remove(filmId);
+    }
+}
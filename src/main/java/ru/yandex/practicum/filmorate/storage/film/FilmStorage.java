@@ -2,17 +2,51 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
 import ru.yandex.practicum.filmorate.storage.Storage;
 
-import java.util.Comparator;
 import java.util.List;
 
 @Qualifier("film")
 public interface FilmStorage extends Storage<Film> {
 
-    List<Film> findPopular(Comparator<Film> comparator, int count);
+    default List<Film> findPopular(int count) {
+        return findPopular(count, PopularFilmsFilter.NONE);
+    }
 
-    Film addLike(long filmId, long userId);
+    // Самые популярные фильмы среди подходящих под фильтр
+    List<Film> findPopular(int count, PopularFilmsFilter filter);
 
-    Film deleteLike(long filmId, long userId);
+    // Фильмы по убыванию числа лайков за окно
+    List<Film> findTrending(TrendingWindow window, int count);
+
+    // Фильмы, чаще всего лайкнутые вместе с filmId, по убыванию числа общих лайков
+    List<Film> findSimilar(long filmId, int limit);
+
+    // Фильмы, которые пользователь не лайкал, по сумме совместных лайков с его фильмами
+    List<Film> findRecommendations(long userId, int limit);
+
+    // NotFoundException при отсутствии фильма или пользователя, DuplicatedDataException при повторном лайке
+    LikeResult addLike(long filmId, long userId);
+
+    // NotFoundException при отсутствии фильма, пользователя или лайка
+    LikeResult deleteLike(long filmId, long userId);
+
+    List<Long> findLikes(long filmId, long afterUserId, int limit);
+
+    // Сбрасывает закэшированные фильмы, например после изменения встроенных в них жанров и рейтингов
+    default void evictCache() {
+    }
+
+    // Удаление жанра каскадно убирает его у фильмов: сбрасывает кэш и отбор популярных по жанру
+    default void evictGenre(long genreId) {
+        evictCache();
+    }
+
+    // Удаление рейтинга MPA обнуляет его у фильмов: сбрасывает кэш и отбор популярных по рейтингу
+    default void evictRating(long ratingId) {
+        evictCache();
+    }
 }
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Instant;
+
+public interface FilmStorageListener {
+
+    default void onFilmSaved(Film film) {
+    }
+
+    default void onFilmDeleted(long filmId) {
+    }
+
+    default void onLikeAdded(long filmId, long userId) {
+    }
+
+    default void onLikeDeleted(long filmId, long userId) {
+    }
+
+    // Хранилища сообщают о лайках вместе с временем лайка; слушателям, которым оно не нужно, хватает событий выше
+    default void onLikeAdded(long filmId, long userId, Instant createdAt) {
+        onLikeAdded(filmId, userId);
+    }
+
+    // likedAt - время удалённого лайка, а не время удаления
+    default void onLikeDeleted(long filmId, long userId, Instant likedAt) {
+        onLikeDeleted(filmId, userId);
+    }
+}
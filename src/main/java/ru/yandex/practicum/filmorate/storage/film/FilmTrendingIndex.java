@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.util.collection.SlidingWindowCounter;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Число лайков фильмов за последний час, сутки и неделю. Для каждого окна - свой счётчик с корзинами:
+ * по минуте для часа, по 15 минут для суток, по часу для недели. Удаление лайка вычитается из корзины
+ * времени самого лайка, поэтому слушателю нужны события со временем лайка.
+ */
+@Component
+public class FilmTrendingIndex implements FilmStorageListener {
+    private final Clock clock;
+    private final Map<TrendingWindow, SlidingWindowCounter> counters = new EnumMap<>(TrendingWindow.class);
+
+    public FilmTrendingIndex() {
+        this(Clock.systemUTC());
+    }
+
+    public FilmTrendingIndex(Clock clock) {
+        this.clock = clock;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            int bucketCount = bucketCount(window);
+            counters.put(window, new SlidingWindowCounter(window.getDuration().toMillis() / bucketCount, bucketCount));
+        }
+    }
+
+    private static int bucketCount(TrendingWindow window) {
+        return switch (window) {
+            case HOUR -> 60;
+            case DAY -> 96;
+            case WEEK -> 168;
+        };
+    }
+
+    // Строит счётчики заново по лайкам filmIds[i] за время createdAtMillis[i], i < count
+    public void rebuild(long[] filmIds, long[] createdAtMillis, int count) {
+        long now = clock.millis();
+        counters.values().forEach(counter -> counter.reset(filmIds, createdAtMillis, count, now));
+    }
+
+    public List<Long> findTop(TrendingWindow window, int count) {
+        return counters.get(window).top(count, clock.millis());
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        counters.values().forEach(counter -> counter.remove(filmId));
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId, Instant createdAt) {
+        long now = clock.millis();
+        counters.values().forEach(counter -> counter.add(filmId, createdAt.toEpochMilli(), 1, now));
+    }
+
+    @Override
+    public void onLikeDeleted(long filmId, long userId, Instant likedAt) {
+        long now = clock.millis();
+        counters.values().forEach(counter -> counter.add(filmId, likedAt.toEpochMilli(), -1, now));
+    }
+}
@@ -2,24 +2,55 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.Getter;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 @Getter
 @Component
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    // Хранилище безопасно для параллельных запросов: лайк меняет множество и счётчик под блокировкой
+    // ячейки фильма в ConcurrentHashMap, а читатели обходят конкурентное множество без блокировок
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final FilmSimilarityIndex similarityIndex = new FilmSimilarityIndex();
+    private final FilmTrendingIndex trendingIndex = new FilmTrendingIndex();
+    // время лайков для счётчиков по окнам: filmId -> userId -> время
+    private final Map<Long, Map<Long, Instant>> likeTimes = new ConcurrentHashMap<>();
+    // поиск фильма с тем же названием и датой выхода без обхода всех фильмов
+    private final Map<TitleKey, Long> titleToId = new ConcurrentHashMap<>();
 
     @Override
     public List<Film> findAll() {
         return List.copyOf(films.values());
     }
 
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return films.values().stream()
+                .filter(f -> f.getId() > afterId)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .toList();
+    }
+
     @Override
     public Optional<Film> findById(long id) {
         return Optional.ofNullable(films.get(id));
@@ -27,53 +58,158 @@ public class InMemoryFilmStorage implements FilmStorage {
 
     @Override
     public Film create(Film film) {
-        film.setId(getNextId());
+        film.setId(idSequence.incrementAndGet());
+        film.setLikes(concurrentCopy(film.getLikes()));
+        film.setLikesCount(film.getLikes().size());
         films.put(film.getId(), film);
+        titleToId.putIfAbsent(TitleKey.of(film), film.getId());
         return film;
     }
 
+    // Лайки принадлежат хранилищу: новый объект получает текущее множество, чтобы не потерять параллельные лайки
     @Override
     public Film update(Film film) {
-        films.put(film.getId(), film);
+        films.compute(film.getId(), (id, oldFilm) -> {
+            film.setLikes(oldFilm == null ? concurrentCopy(film.getLikes()) : oldFilm.getLikes());
+            film.setLikesCount(film.getLikes().size());
+            if (oldFilm != null) {
+                titleToId.remove(TitleKey.of(oldFilm), id);
+            }
+            titleToId.putIfAbsent(TitleKey.of(film), id);
+            return film;
+        });
         return film;
     }
 
     @Override
     public void delete(long id) {
-        films.remove(id);
+        Film film = films.remove(id);
+        if (film != null) {
+            titleToId.remove(TitleKey.of(film), id);
+        }
+        similarityIndex.onFilmDeleted(id);
+        trendingIndex.onFilmDeleted(id);
+        likeTimes.remove(id);
     }
 
     @Override
     public Optional<Film> findEqual(Film film) {
-        return films.values().stream()
-                .filter(f -> f.equals(film))
-                .findFirst();
+        return Optional.ofNullable(titleToId.get(TitleKey.of(film))).map(films::get);
     }
 
     @Override
-    public List<Film> findPopular(Comparator<Film> comparator, int count) {
+    public List<Film> findPopular(int count, PopularFilmsFilter filter) {
+        // счётчики фиксируются до сортировки: параллельный лайк не должен менять ключ во время сравнения
         return films.values().stream()
-                .sorted(comparator)
+                .filter(filter::matches)
+                .map(film -> Map.entry(film, film.getLikesCount()))
+                .sorted(Map.Entry.<Film, Long>comparingByValue().reversed()
+                        .thenComparing(entry -> entry.getKey().getId()))
                 .limit(count)
+                .map(Map.Entry::getKey)
                 .toList();
     }
 
     @Override
-    public Film addLike(long filmId, long userId) {
-        Film film = films.get(filmId);
-        film.getLikes().add(userId);
-        return film;
+    public List<Film> findTrending(TrendingWindow window, int count) {
+        return trendingIndex.findTop(window, count).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public List<Film> findSimilar(long filmId, int limit) {
+        return findByIdsInOrder(similarityIndex.findSimilarIds(filmId, limit));
+    }
+
+    @Override
+    public List<Film> findRecommendations(long userId, int limit) {
+        return findByIdsInOrder(similarityIndex.recommendIds(userId, limit));
+    }
+
+    private List<Film> findByIdsInOrder(long[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(films::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Override
-    public Film deleteLike(long filmId, long userId) {
+    public LikeResult addLike(long filmId, long userId) {
+        long[] likesCount = new long[1];
+        Instant createdAt = Instant.now();
+        Film film = films.computeIfPresent(filmId, (id, f) -> {
+            if (!f.getLikes().add(userId)) {
+                throw new DuplicatedDataException("Лайк от пользователя #%d добавлен ранее".formatted(userId));
+            }
+            likeTimes.computeIfAbsent(id, key -> new ConcurrentHashMap<>()).put(userId, createdAt);
+            f.setLikesCount(f.getLikes().size());
+            likesCount[0] = f.getLikesCount();
+            return f;
+        });
+        if (film == null) {
+            throw new NotFoundException("Фильм не найден");
+        }
+        similarityIndex.onLikeAdded(filmId, userId);
+        trendingIndex.onLikeAdded(filmId, userId, createdAt);
+        return new LikeResult(filmId, userId, likesCount[0]);
+    }
+
+    @Override
+    public LikeResult deleteLike(long filmId, long userId) {
+        long[] likesCount = new long[1];
+        Instant[] likedAt = {Instant.EPOCH};
+        Film film = films.computeIfPresent(filmId, (id, f) -> {
+            if (!f.getLikes().remove(userId)) {
+                throw new NotFoundException("Лайк от пользователя #%d не найден".formatted(userId));
+            }
+            Map<Long, Instant> userIdToLikedAt = likeTimes.get(id);
+            if (userIdToLikedAt != null && userIdToLikedAt.containsKey(userId)) {
+                likedAt[0] = userIdToLikedAt.remove(userId);
+            }
+            f.setLikesCount(f.getLikes().size());
+            likesCount[0] = f.getLikesCount();
+            return f;
+        });
+        if (film == null) {
+            throw new NotFoundException("Фильм не найден");
+        }
+        similarityIndex.onLikeDeleted(filmId, userId);
+        trendingIndex.onLikeDeleted(filmId, userId, likedAt[0]);
+        return new LikeResult(filmId, userId, likesCount[0]);
+    }
+
+    @Override
+    public List<Long> findLikes(long filmId, long afterUserId, int limit) {
         Film film = films.get(filmId);
-        film.getLikes().remove(userId);
-        return film;
+        if (film == null) {
+            return List.of();
+        }
+        return film.getLikes().stream()
+                .filter(userId -> userId > afterUserId)
+                .sorted()
+                .limit(limit)
+                .toList();
     }
 
-    private long getNextId() {
-        long currentMaxId = films.keySet().stream().mapToLong(id -> id).max().orElse(0);
-        return ++currentMaxId;
+    private static Set<Long> concurrentCopy(Set<Long> ids) {
+        Set<Long> copy = ConcurrentHashMap.newKeySet();
+        if (ids != null) {
+            copy.addAll(ids);
+        }
+        return copy;
+    }
+
+    // Название без учёта регистра и лишних пробелов, как в столбце films.name_key
+    private record TitleKey(String name, LocalDate releaseDate) {
+        private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+        static TitleKey of(Film film) {
+            String name = film.getName() == null
+                    ? null
+                    : WHITESPACE.matcher(film.getName()).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+            return new TitleKey(name, film.getReleaseDate());
+        }
     }
 }
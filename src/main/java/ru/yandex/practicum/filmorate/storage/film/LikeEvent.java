@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.time.Instant;
+
+// Событие лайка (liked = true) или его отмены для отложенной записи; одна строка журнала
+public record LikeEvent(boolean liked, long filmId, long userId, Instant createdAt) {
+
+    public static LikeEvent parse(String line) {
+        String[] parts = line.split(" ");
+        return new LikeEvent("+".equals(parts[0]),
+                Long.parseLong(parts[1]),
+                Long.parseLong(parts[2]),
+                Instant.ofEpochMilli(Long.parseLong(parts[3])));
+    }
+
+    public String toJournalLine() {
+        return "%s %d %d %d".formatted(liked ? "+" : "-", filmId, userId, createdAt.toEpochMilli());
+    }
+}
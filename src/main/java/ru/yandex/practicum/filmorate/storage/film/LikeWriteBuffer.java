@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Отложенная запись лайков: события копятся в памяти и пишутся в БД пачкой в одной транзакции
+ * раз в {@code flushIntervalMillis} или по накоплении {@code batchSize} событий.
+ * Перед подтверждением событие дописывается в журнал на диске (сбрасывается в ОС без fsync: переживает
+ * падение процесса, но не отключение питания). Журнал разбит на сегменты,
+ * сегмент удаляется после коммита его событий, а оставшиеся сегменты применяются при следующем запуске.
+ * Повторный лайк, лайк несуществующего пользователя и отмена отсутствующего лайка отклоняются так же,
+ * как при синхронной записи: состояние лайка берётся из ещё не записанных событий, а без них - из графа
+ * лайков {@link FilmSimilarityIndex}, существование пользователя проверяется запросом по первичному ключу.
+ * Если фильм или пользователь удалены после подтверждения, но до сброса, событие при сбросе пропускается.
+ * Счётчик в ответе отражает лайки, уже записанные в БД, и может отставать на одну пачку.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer {
+    private static final String SEGMENT_PREFIX = "likes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final DbFilmStorage filmStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSimilarityIndex similarityIndex;
+    private final Path journalDir;
+    private final long flushIntervalMillis;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "like-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private List<LikeEvent> pending = new ArrayList<>();
+    // последнее подтверждённое, но ещё не закоммиченное событие каждой пары фильм-пользователь
+    private final Map<LikeKey, LikeEvent> unflushed = new HashMap<>();
+    private boolean flushRequested;
+    private long segmentNumber;
+    private Path segment;
+    private BufferedWriter journal;
+    // сегменты, чьи события забраны из pending, но ещё не закоммичены; меняется только потоком сброса
+    private final List<Path> flushingSegments = new ArrayList<>();
+
+    @Autowired
+    public LikeWriteBuffer(DbFilmStorage filmStorage,
+                           FilmPopularityIndex popularityIndex,
+                           FilmSimilarityIndex similarityIndex,
+                           @Value("${filmorate.likes.write-behind.journal-dir:./db/likes-journal}") Path journalDir,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:5}") long flushIntervalMillis,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize) {
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        this.similarityIndex = similarityIndex;
+        this.journalDir = journalDir;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(journalDir);
+        List<Path> segments = findSegments();
+        if (!segments.isEmpty()) {
+            List<LikeEvent> events = new ArrayList<>();
+            for (Path path : segments) {
+                try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+                    lines.filter(line -> !line.isBlank()).map(LikeEvent::parse).forEach(events::add);
+                }
+            }
+            filmStorage.applyLikeEvents(events);
+            for (Path path : segments) {
+                Files.delete(path);
+            }
+            segmentNumber = segmentNumber(segments.getLast());
+            log.info("Из журнала лайков восстановлено {} событий", events.size());
+        }
+        openSegment();
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+        synchronized (lock) {
+            journal.close();
+            if (pending.isEmpty() && flushingSegments.isEmpty()) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    public LikeResult addLike(long filmId, long userId) {
+        return append(new LikeEvent(true, filmId, userId, Instant.now()));
+    }
+
+    public LikeResult deleteLike(long filmId, long userId) {
+        return append(new LikeEvent(false, filmId, userId, Instant.now()));
+    }
+
+    private LikeResult append(LikeEvent event) {
+        if (!popularityIndex.contains(event.filmId())) {
+            throw new NotFoundException("Фильм не найден");
+        }
+        if (event.liked() && !filmStorage.userExists(event.userId())) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+        LikeKey key = new LikeKey(event.filmId(), event.userId());
+        boolean accepted;
+        synchronized (lock) {
+            accepted = isLiked(key) != event.liked();
+            if (accepted) {
+                try {
+                    journal.write(event.toJournalLine());
+                    journal.newLine();
+                    journal.flush();
+                } catch (IOException e) {
+                    throw new InternalServerException("Не удалось записать лайк в журнал");
+                }
+                pending.add(event);
+                unflushed.put(key, event);
+                if (pending.size() >= batchSize && !flushRequested) {
+                    flushRequested = true;
+                    flusher.execute(this::flush);
+                }
+            }
+        }
+        if (!accepted) {
+            throw likeError(event);
+        }
+        return new LikeResult(event.filmId(), event.userId(), popularityIndex.getLikesCount(event.filmId()));
+    }
+
+    // Вызывается под lock
+    private boolean isLiked(LikeKey key) {
+        LikeEvent last = unflushed.get(key);
+        return last != null ? last.liked() : similarityIndex.hasLike(key.filmId(), key.userId());
+    }
+
+    private RuntimeException likeError(LikeEvent event) {
+        if (event.liked()) {
+            return new DuplicatedDataException("Лайк от пользователя #%d добавлен ранее".formatted(event.userId()));
+        }
+        if (!filmStorage.userExists(event.userId())) {
+            return new NotFoundException("Пользователь не найден");
+        }
+        return new NotFoundException("Лайк от пользователя #%d не найден".formatted(event.userId()));
+    }
+
+    // Вызывается только из потока сброса или после его остановки
+    void flush() {
+        List<LikeEvent> batch;
+        synchronized (lock) {
+            flushRequested = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            try {
+                journal.close();
+                flushingSegments.add(segment);
+                openSegment();
+            } catch (IOException e) {
+                log.error("Не удалось переключить сегмент журнала лайков", e);
+                batch.addAll(pending);
+                pending = batch;
+                return;
+            }
+        }
+
+        try {
+            filmStorage.applyLikeEvents(batch);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать {} событий лайков, повтор при следующем сбросе", batch.size(), e);
+            synchronized (lock) {
+                batch.addAll(pending);
+                pending = batch;
+            }
+            return;
+        }
+
+        // слушатели уже получили закоммиченные события, дальше состояние лайка читается из графа лайков
+        synchronized (lock) {
+            batch.forEach(event -> unflushed.remove(new LikeKey(event.filmId(), event.userId()), event));
+        }
+
+        try {
+            for (Path path : flushingSegments) {
+                Files.deleteIfExists(path);
+            }
+            flushingSegments.clear();
+        } catch (IOException e) {
+            // повторное применение сегмента безопасно: в БД попадает последнее состояние каждой пары
+            log.warn("Не удалось удалить сегмент журнала лайков", e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segmentNumber++;
+        segment = journalDir.resolve("%s%019d%s".formatted(SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+        journal = Files.newBufferedWriter(segment, StandardCharsets.UTF_8);
+    }
+
+    private List<Path> findSegments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(LikeWriteBuffer::segmentNumber))
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new UncheckedIOException(new IOException("Некорректное имя сегмента журнала: " + name, e));
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+}
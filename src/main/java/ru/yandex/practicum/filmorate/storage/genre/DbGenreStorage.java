@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -7,17 +8,21 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.DbBaseStorage;
+import ru.yandex.practicum.filmorate.util.cache.ReadThroughCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Primary
 @Repository
 public class DbGenreStorage extends DbBaseStorage<Genre> implements GenreStorage {
     private static final String FIND_ALL_QUERY = "SELECT id, name FROM genres";
     private static final String FIND_BY_ID_QUERY = FIND_ALL_QUERY + " WHERE id = ?";
+    private static final String FIND_EXISTING_IDS_QUERY = "SELECT id FROM genres WHERE id = ANY(?)";
     private static final String FIND_EQUAL_QUERY = FIND_ALL_QUERY + " WHERE name = ?";
     private static final String CREATE_QUERY = "INSERT INTO genres(name) VALUES (?)";
     private static final String UPDATE_QUERY = "UPDATE genres SET name = ? WHERE id = ?";
@@ -25,37 +30,73 @@ public class DbGenreStorage extends DbBaseStorage<Genre> implements GenreStorage
 
     private static final RowMapper<Genre> rowMapper = new GenreRowMapper();
 
+    // справочник почти не меняется: читаем его из памяти, а запись инвалидирует затронутый id
+    private final ReadThroughCache<Genre> cache;
+
     @Autowired
     protected DbGenreStorage(JdbcTemplate jdbcTemplate) {
         super(jdbcTemplate);
+        this.cache = new ReadThroughCache<>(Genre::getId,
+                id -> findOne(FIND_BY_ID_QUERY, rowMapper, id),
+                () -> findMany(FIND_ALL_QUERY, rowMapper));
+    }
+
+    @PostConstruct
+    public void preload() {
+        cache.preload();
     }
 
     @Override
     public List<Genre> findAll() {
-        return findMany(FIND_ALL_QUERY, rowMapper);
+        return cache.getAll();
+    }
+
+    @Override
+    public List<Genre> findPage(long afterId, int limit) {
+        return cache.getPage(afterId, limit);
     }
 
     @Override
     public Optional<Genre> findById(long id) {
-        return findOne(FIND_BY_ID_QUERY, rowMapper, id);
+        return cache.get(id);
+    }
+
+    // Обычно все жанры уже в кэше и запрос не нужен; остальные проверяются одним запросом
+    @Override
+    public Set<Long> findMissingIds(Collection<Long> ids) {
+        Set<Long> uncached = cache.findUncached(ids);
+        if (!uncached.isEmpty()) {
+            findColumn(FIND_EXISTING_IDS_QUERY, Long.class, (Object) uncached.toArray(Long[]::new))
+                    .forEach(uncached::remove);
+        }
+        return uncached;
     }
 
     @Override
     public Genre create(Genre genre) {
         long id = super.create(CREATE_QUERY, genre.getName());
         genre.setId(id);
+        invalidate(id);
         return genre;
     }
 
     @Override
     public Genre update(Genre genre) {
         super.update(UPDATE_QUERY, genre.getName(), genre.getId());
+        invalidate(genre.getId());
         return genre;
     }
 
     @Override
     public void delete(long id) {
         super.delete(DELETE_QUERY, id);
+        invalidate(id);
+    }
+
+    // повторная инвалидация после коммита не даёт закэшировать значение, прочитанное до него
+    private void invalidate(long id) {
+        cache.invalidate(id);
+        afterCommit(() -> cache.invalidate(id));
     }
 
     @Override
@@ -3,6 +3,11 @@ package ru.yandex.practicum.filmorate.storage.genre;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.Storage;
 
+import java.util.Collection;
+import java.util.Set;
+
 public interface GenreStorage extends Storage<Genre> {
 
+    // Идентификаторы из ids, для которых нет жанра, по возрастанию
+    Set<Long> findMissingIds(Collection<Long> ids);
 }
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.rating;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -7,6 +8,7 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.storage.DbBaseStorage;
+import ru.yandex.practicum.filmorate.util.cache.ReadThroughCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -25,37 +27,62 @@ public class DbRatingStorage extends DbBaseStorage<Rating> implements RatingStor
 
     private static final RowMapper<Rating> rowMapper = new RatingRowMapper();
 
+    // справочник почти не меняется: читаем его из памяти, а запись инвалидирует затронутый id
+    private final ReadThroughCache<Rating> cache;
+
     @Autowired
     protected DbRatingStorage(JdbcTemplate jdbcTemplate) {
         super(jdbcTemplate);
+        this.cache = new ReadThroughCache<>(Rating::getId,
+                id -> findOne(FIND_BY_ID_QUERY, rowMapper, id),
+                () -> findMany(FIND_ALL_QUERY, rowMapper));
+    }
+
+    @PostConstruct
+    public void preload() {
+        cache.preload();
     }
 
     @Override
     public List<Rating> findAll() {
-        return findMany(FIND_ALL_QUERY, rowMapper);
+        return cache.getAll();
+    }
+
+    @Override
+    public List<Rating> findPage(long afterId, int limit) {
+        return cache.getPage(afterId, limit);
     }
 
     @Override
     public Optional<Rating> findById(long id) {
-        return findOne(FIND_BY_ID_QUERY, rowMapper, id);
+        return cache.get(id);
     }
 
     @Override
     public Rating create(Rating rating) {
         long id = super.create(CREATE_QUERY, rating.getName(), rating.getDescription());
         rating.setId(id);
+        invalidate(id);
         return rating;
     }
 
     @Override
     public Rating update(Rating rating) {
         super.update(UPDATE_QUERY, rating.getName(), rating.getId());
+        invalidate(rating.getId());
         return rating;
     }
 
     @Override
     public void delete(long id) {
         super.delete(DELETE_QUERY, id);
+        invalidate(id);
+    }
+
+    // повторная инвалидация после коммита не даёт закэшировать значение, прочитанное до него
+    private void invalidate(long id) {
+        cache.invalidate(id);
+        afterCommit(() -> cache.invalidate(id));
     }
 
     @Override
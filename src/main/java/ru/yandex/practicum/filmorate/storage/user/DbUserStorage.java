@@ -1,27 +1,39 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.DbBaseStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorageListener;
+import ru.yandex.practicum.filmorate.util.collection.SortedLongArrays;
 
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 @Primary
 @Repository
 public class DbUserStorage extends DbBaseStorage<User> implements UserStorage {
@@ -36,20 +48,77 @@ public class DbUserStorage extends DbBaseStorage<User> implements UserStorage {
             LEFT JOIN friends AS f
             ON u.id = f.offered_by
             """;
-    private static final String FIND_BY_IDS_QUERY = FIND_ALL_QUERY + " WHERE u.id IN (?)";
+    private static final String FIND_PAGE_QUERY = """
+            SELECT  u.id,
+                    u.name,
+                    u.email,
+                    u.login,
+                    u.birthday,
+                    f.candidate_id AS accepted_user_id
+            FROM (SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?) AS u
+            LEFT JOIN friends AS f
+            ON u.id = f.offered_by
+            ORDER BY u.id
+            """;
+    private static final String FIND_BY_IDS_QUERY = FIND_ALL_QUERY + " WHERE u.id = ANY(?) ORDER BY u.id";
     private static final String FIND_BY_ID_QUERY = FIND_ALL_QUERY + " WHERE u.id = ?";
     private static final String FIND_EQUAL_QUERY = FIND_ALL_QUERY + " WHERE u.email = ?";
+    private static final String FIND_ID_BY_EMAIL_QUERY = "SELECT id FROM users WHERE email = ?";
+    private static final String FIND_ALL_EMAILS_QUERY = "SELECT email FROM users WHERE email IS NOT NULL";
     private static final String CREATE_QUERY = "INSERT INTO users(name, email, login, birthday) VALUES (?, ?, ?, ?)";
     private static final String UPDATE_QUERY = "UPDATE users SET name = ?, email = ?, login = ?,  birthday = ? WHERE id = ?";
     private static final String DELETE_QUERY = "DELETE FROM users WHERE id = ?";
+    private static final String FIND_LIKES_QUERY = "SELECT film_id, created_at FROM likes WHERE user_id = ?";
+    private static final String DECREMENT_LIKE_COUNT_QUERY = """
+            UPDATE films
+            SET like_count = like_count - 1
+            WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)
+            """;
     private static final String ADD_FRIEND_QUERY = "INSERT INTO friends(offered_by, candidate_id, offered_at) VALUES (?, ?, ?)";
     private static final String DELETE_FRIEND_QUERY = "DELETE FROM friends WHERE offered_by = ? AND candidate_id = ?";
+    private static final String FIND_FRIEND_EDGES_QUERY = "SELECT offered_by, candidate_id FROM friends";
+
+    private static final int FIND_BY_IDS_BATCH_SIZE = 1000;
 
     private static final ResultSetExtractor<List<User>> userListExtractor = new UserListExtractor();
 
+    private final List<FilmStorageListener> filmListeners;
+    // копия таблицы friends для запросов по id друзей, обновляется после коммита
+    private final FriendGraph friendGraph = new FriendGraph();
+    // все email из таблицы users и, возможно, уже удалённые или изменённые: отсутствие email здесь означает,
+    // что он свободен, и проверка при регистрации обходится без запроса; лишние записи стоят одного запроса
+    private final Set<String> knownEmails = ConcurrentHashMap.newKeySet();
+
     @Autowired
-    public DbUserStorage(JdbcTemplate jdbcTemplate) {
+    public DbUserStorage(JdbcTemplate jdbcTemplate, List<FilmStorageListener> filmListeners) {
         super(jdbcTemplate);
+        this.filmListeners = filmListeners;
+    }
+
+    @PostConstruct
+    public void loadFriendGraph() {
+        long[][] edges = {new long[1024], new long[1024]};
+        int[] count = {0};
+        forEachRow(FIND_FRIEND_EDGES_QUERY, rs -> {
+            if (count[0] == edges[0].length) {
+                edges[0] = Arrays.copyOf(edges[0], count[0] * 2);
+                edges[1] = Arrays.copyOf(edges[1], count[0] * 2);
+            }
+            edges[0][count[0]] = rs.getLong("offered_by");
+            edges[1][count[0]] = rs.getLong("candidate_id");
+            count[0]++;
+        });
+        friendGraph.load(edges[0], edges[1], count[0]);
+        log.info("Граф дружбы построен: {} связей", friendGraph.edgeCount());
+    }
+
+    @PostConstruct
+    public void loadEmails() {
+        Set<String> emails = new HashSet<>();
+        forEachRow(FIND_ALL_EMAILS_QUERY, rs -> emails.add(rs.getString("email")));
+        knownEmails.clear();
+        knownEmails.addAll(emails);
+        log.info("Загружено email пользователей: {}", knownEmails.size());
     }
 
     @Override
@@ -58,17 +127,23 @@ public class DbUserStorage extends DbBaseStorage<User> implements UserStorage {
     }
 
     @Override
-    public List<User> findByIds(Collection<Long> ids) {
-        if (ids.isEmpty()) {
-            return new ArrayList<>();
-        }
+    public List<User> findPage(long afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, userListExtractor, afterId, limit);
+    }
 
-        return findMany(FIND_BY_IDS_QUERY,
-                userListExtractor,
-                ids.stream()
-                        .map(Object::toString)
-                        .collect(Collectors.joining(", "))
-        );
+    // Идентификаторы передаются массивом: текст запроса не зависит от их количества, и подготовленный запрос
+    // переиспользуется, а пачки ограничивают размер одного поиска по первичному ключу
+    private List<User> findBySortedIds(long[] ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += FIND_BY_IDS_BATCH_SIZE) {
+            int to = Math.min(from + FIND_BY_IDS_BATCH_SIZE, ids.length);
+            Long[] batch = new Long[to - from];
+            for (int i = from; i < to; i++) {
+                batch[i - from] = ids[i];
+            }
+            users.addAll(findMany(FIND_BY_IDS_QUERY, userListExtractor, (Object) batch));
+        }
+        return users;
     }
 
     @Override
@@ -76,45 +151,120 @@ public class DbUserStorage extends DbBaseStorage<User> implements UserStorage {
         return findOne(FIND_BY_ID_QUERY, userListExtractor, id);
     }
 
+    @Override
+    public Optional<Long> findIdByEmail(String email) {
+        if (email == null || !knownEmails.contains(email)) {
+            return Optional.empty();
+        }
+        return findColumn(FIND_ID_BY_EMAIL_QUERY, Long.class, email).stream().findFirst();
+    }
+
+    // Email добавляется в множество до коммита: при откате остаётся лишняя запись, но не пропадает нужная
     @Override
     public User create(User user) {
-        long id = super.create(CREATE_QUERY,
-                user.getName(),
-                user.getEmail(),
-                user.getLogin(),
-                user.getBirthday()
-        );
-        user.setId(id);
+        rememberEmail(user.getEmail());
+        try {
+            long id = super.create(CREATE_QUERY,
+                    user.getName(),
+                    user.getEmail(),
+                    user.getLogin(),
+                    user.getBirthday()
+            );
+            user.setId(id);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Этот email уже используется");
+        }
 
         return user;
     }
 
     @Override
     public User update(User user) {
-        super.update(UPDATE_QUERY,
-                user.getName(),
-                user.getEmail(),
-                user.getLogin(),
-                user.getBirthday(),
-                user.getId());
+        rememberEmail(user.getEmail());
+        try {
+            super.update(UPDATE_QUERY,
+                    user.getName(),
+                    user.getEmail(),
+                    user.getLogin(),
+                    user.getBirthday(),
+                    user.getId());
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Этот email уже используется");
+        }
 
         return user;
     }
 
+    private void rememberEmail(String email) {
+        if (email != null) {
+            knownEmails.add(email);
+        }
+    }
+
     @Override
+    @Transactional
     public void delete(long id) {
+        // время лайков нужно слушателям, которые считают лайки по окнам времени
+        Map<Long, Instant> filmIdToLikedAt = new HashMap<>();
+        forEachRow(FIND_LIKES_QUERY, rs -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            filmIdToLikedAt.put(rs.getLong("film_id"), createdAt == null ? Instant.EPOCH : createdAt.toInstant());
+        }, id);
+        execute(DECREMENT_LIKE_COUNT_QUERY, id);
         super.delete(DELETE_QUERY, id);
+        afterCommit(() -> {
+            friendGraph.deleteUser(id);
+            filmIdToLikedAt.forEach((filmId, likedAt) ->
+                    filmListeners.forEach(listener -> listener.onLikeDeleted(filmId, id, likedAt)));
+        });
+    }
+
+    @Override
+    public List<User> findFriends(long userId) {
+        return findBySortedIds(friendGraph.findFriendIds(userId));
+    }
+
+    @Override
+    public int countFriends(long userId) {
+        return friendGraph.countFriends(userId);
+    }
+
+    @Override
+    public List<User> findCommonFriends(long userId, long otherId, long afterId, int limit) {
+        return findBySortedIds(friendGraph.findCommonFriendIds(userId, otherId, afterId, limit));
+    }
+
+    @Override
+    public List<User> findFriendSuggestions(long userId, int limit) {
+        return findByIdsInOrder(friendGraph.suggestFriendIds(userId, limit));
+    }
+
+    @Override
+    public List<User> findFriendPath(long userId, long otherId, int maxLength) {
+        return findByIdsInOrder(friendGraph.findPath(userId, otherId, maxLength));
+    }
+
+    // Пользователи в порядке переданных id, загруженные одним поиском по отсортированным id
+    private List<User> findByIdsInOrder(long[] ids) {
+        Map<Long, User> idToUser = new HashMap<>();
+        findBySortedIds(SortedLongArrays.of(ids)).forEach(user -> idToUser.put(user.getId(), user));
+        return Arrays.stream(ids)
+                .mapToObj(idToUser::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Override
     public User addFriend(long userId, long friendId) {
         execute(ADD_FRIEND_QUERY, userId, friendId, Instant.now());
+        afterCommit(() -> friendGraph.addFriend(userId, friendId));
         return findById(userId).orElse(null);
     }
 
     @Override
     public User deleteFriend(long userId, long friendId) {
         execute(DELETE_FRIEND_QUERY, userId, friendId);
+        afterCommit(() -> friendGraph.deleteFriend(userId, friendId));
         return findById(userId).orElse(null);
     }
 
@@ -128,7 +278,7 @@ public class DbUserStorage extends DbBaseStorage<User> implements UserStorage {
 
         @Override
         public List<User> extractData(ResultSet resultSet) throws SQLException, DataAccessException {
-            Map<Long, User> idToUser = new HashMap<>();
+            Map<Long, User> idToUser = new LinkedHashMap<>();
 
             while (resultSet.next()) {
                 Long userId = resultSet.getLong("id");
@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.util.collection.LongCounter;
+import ru.yandex.practicum.filmorate.util.collection.LongGraph;
+import ru.yandex.practicum.filmorate.util.collection.LongLongMap;
+import ru.yandex.practicum.filmorate.util.collection.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Граф дружбы в памяти: ребро userId -> friendId означает, что friendId есть в списке друзей userId.
+ * Запросы по идентификаторам друзей выполняются над примитивными массивами, без {@code Set<Long>}.
+ */
+public class FriendGraph {
+    public static final int MAX_SUGGESTIONS = 100;
+    public static final int MAX_PATH_LENGTH = 6;
+    // предел рёбер, просматриваемых при подборе рекомендаций или поиске пути для одного запроса
+    private static final int MAX_TRAVERSED_EDGES = 1_000_000;
+    private static final int MAX_CACHED_SUGGESTIONS = 10_000;
+
+    private final LongGraph graph = new LongGraph();
+    private final Map<Long, long[]> suggestionsCache = new ConcurrentHashMap<>();
+    // меняется при каждой записи: рекомендации, посчитанные по устаревшему графу, не попадают в кэш
+    private final AtomicLong version = new AtomicLong();
+
+    public void load(long[] userIds, long[] friendIds, int count) {
+        version.incrementAndGet();
+        graph.load(userIds, friendIds, count);
+        suggestionsCache.clear();
+    }
+
+    public void addFriend(long userId, long friendId) {
+        version.incrementAndGet();
+        graph.addEdge(userId, friendId);
+        invalidateSuggestions(userId, friendId);
+    }
+
+    public void deleteFriend(long userId, long friendId) {
+        version.incrementAndGet();
+        graph.removeEdge(userId, friendId);
+        invalidateSuggestions(userId, friendId);
+    }
+
+    public void deleteUser(long userId) {
+        version.incrementAndGet();
+        graph.removeVertex(userId);
+        suggestionsCache.clear();
+    }
+
+    // Отсортированные id друзей; массив общий, изменять его нельзя
+    public long[] findFriendIds(long userId) {
+        return graph.successors(userId);
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        return graph.hasEdge(userId, friendId);
+    }
+
+    public int countFriends(long userId) {
+        return graph.outDegree(userId);
+    }
+
+    public long[] findCommonFriendIds(long userId, long otherId, long afterId, int limit) {
+        return SortedLongArrays.intersect(graph.successors(userId), graph.successors(otherId), afterId, limit);
+    }
+
+    /**
+     * До {@code limit} (не больше {@link #MAX_SUGGESTIONS}) пользователей, которых нет среди друзей userId,
+     * по убыванию числа общих друзей. Обход в два шага: друзья userId, затем все, у кого они в друзьях.
+     * Обход ограничен {@link #MAX_TRAVERSED_EDGES} рёбрами, за пределом учитываются только уже просмотренные.
+     */
+    public long[] suggestFriendIds(long userId, int limit) {
+        long[] cached = suggestionsCache.get(userId);
+        if (cached == null) {
+            long computedVersion = version.get();
+            cached = computeSuggestions(userId);
+            if (version.get() == computedVersion) {
+                if (suggestionsCache.size() >= MAX_CACHED_SUGGESTIONS) {
+                    suggestionsCache.clear();
+                }
+                suggestionsCache.put(userId, cached);
+            }
+        }
+        return cached.length <= limit ? cached : Arrays.copyOf(cached, limit);
+    }
+
+    private long[] computeSuggestions(long userId) {
+        long[] friendIds = graph.successors(userId);
+        LongCounter mutualFriends = new LongCounter(friendIds.length * 4);
+        int budget = MAX_TRAVERSED_EDGES;
+        for (long friendId : friendIds) {
+            for (long candidateId : graph.predecessors(friendId)) {
+                if (candidateId != userId && Arrays.binarySearch(friendIds, candidateId) < 0) {
+                    mutualFriends.increment(candidateId);
+                }
+            }
+            budget -= graph.predecessors(friendId).length;
+            if (budget <= 0) {
+                break;
+            }
+        }
+        return mutualFriends.top(MAX_SUGGESTIONS);
+    }
+
+    /**
+     * Кратчайшая цепочка друзей от userId до otherId включительно, не длиннее {@code maxLength} рёбер,
+     * или пустой массив. Поиск в ширину идёт навстречу с двух сторон: от userId по спискам друзей,
+     * от otherId по обратным рёбрам; на каждом шаге расширяется меньший фронт, поиск завершается
+     * при первой встрече фронтов.
+     */
+    public long[] findPath(long userId, long otherId, int maxLength) {
+        if (userId == otherId) {
+            return new long[]{userId};
+        }
+        // для каждой посещённой вершины - предыдущая на пути от своего начала; начала ссылаются на себя
+        LongLongMap forwardParents = new LongLongMap(64);
+        LongLongMap backwardParents = new LongLongMap(64);
+        forwardParents.putIfAbsent(userId, userId);
+        backwardParents.putIfAbsent(otherId, otherId);
+        long[] forwardFrontier = {userId};
+        long[] backwardFrontier = {otherId};
+        int forwardSize = 1;
+        int backwardSize = 1;
+        int length = 0;
+        int budget = MAX_TRAVERSED_EDGES;
+        while (forwardSize > 0 && backwardSize > 0 && length < maxLength && budget > 0) {
+            boolean forward = forwardSize <= backwardSize;
+            long[] frontier = forward ? forwardFrontier : backwardFrontier;
+            int frontierSize = forward ? forwardSize : backwardSize;
+            LongLongMap parents = forward ? forwardParents : backwardParents;
+            LongLongMap otherParents = forward ? backwardParents : forwardParents;
+            long[] next = new long[Math.max(16, frontierSize)];
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize && budget > 0; i++) {
+                long vertex = frontier[i];
+                long[] neighbours = forward ? graph.successors(vertex) : graph.predecessors(vertex);
+                budget -= neighbours.length;
+                for (long neighbour : neighbours) {
+                    if (!parents.putIfAbsent(neighbour, vertex)) {
+                        continue;
+                    }
+                    // фронты раскрываются уровнями целиком, поэтому первая встреча даёт кратчайший путь
+                    if (otherParents.containsKey(neighbour)) {
+                        return buildPath(neighbour, forwardParents, backwardParents);
+                    }
+                    if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    }
+                    next[nextSize++] = neighbour;
+                }
+            }
+            if (forward) {
+                forwardFrontier = next;
+                forwardSize = nextSize;
+            } else {
+                backwardFrontier = next;
+                backwardSize = nextSize;
+            }
+            length++;
+        }
+        return new long[0];
+    }
+
+    private static long[] buildPath(long meetingId, LongLongMap forwardParents, LongLongMap backwardParents) {
+        long[] path = new long[forwardParents.size() + backwardParents.size()];
+        int size = 0;
+        for (long id = meetingId; ; id = forwardParents.get(id, id)) {
+            path[size++] = id;
+            if (forwardParents.get(id, id) == id) {
+                break;
+            }
+        }
+        reverse(path, size);
+        for (long id = meetingId; backwardParents.get(id, id) != id; ) {
+            id = backwardParents.get(id, id);
+            path[size++] = id;
+        }
+        return Arrays.copyOf(path, size);
+    }
+
+    private static void reverse(long[] array, int size) {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            long tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    // Ребро userId -> friendId меняет список друзей userId и число общих друзей для всех, у кого friendId в друзьях
+    private void invalidateSuggestions(long userId, long friendId) {
+        suggestionsCache.remove(userId);
+        for (long affectedId : graph.predecessors(friendId)) {
+            suggestionsCache.remove(affectedId);
+        }
+    }
+
+    public long edgeCount() {
+        return graph.edgeCount();
+    }
+
+    public long estimateBytes() {
+        return graph.estimateBytes();
+    }
+}
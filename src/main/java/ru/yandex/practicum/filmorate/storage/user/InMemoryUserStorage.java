@@ -4,16 +4,26 @@ import lombok.Getter;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Getter
 @Component
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    // Хранилище безопасно для параллельных запросов: изменения пользователя выполняются под блокировкой
+    // его ячейки ConcurrentHashMap, а друзья лежат в конкурентных множествах
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    // те же связи в примитивном виде для запросов по id друзей
+    private final FriendGraph friendGraph = new FriendGraph();
+    private final Map<String, Long> emailToId = new ConcurrentHashMap<>();
 
     @Override
     public List<User> findAll() {
@@ -21,12 +31,19 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public List<User> findByIds(Collection<Long> ids) {
+    public List<User> findPage(long afterId, int limit) {
         return users.values().stream()
-                .filter(user -> ids.contains(user.getId()))
+                .filter(u -> u.getId() > afterId)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
                 .toList();
     }
 
+    @Override
+    public Optional<Long> findIdByEmail(String email) {
+        return email == null ? Optional.empty() : Optional.ofNullable(emailToId.get(email));
+    }
+
     @Override
     public Optional<User> findById(long id) {
         return Optional.ofNullable(users.get(id));
@@ -34,47 +51,117 @@ public class InMemoryUserStorage implements UserStorage {
 
     @Override
     public User create(User user) {
-        user.setId(getNextId());
+        user.setId(idSequence.incrementAndGet());
+        user.setFriends(concurrentCopy(user.getFriends()));
         users.put(user.getId(), user);
+        if (user.getEmail() != null) {
+            emailToId.put(user.getEmail(), user.getId());
+        }
+        user.getFriends().forEach(friendId -> friendGraph.addFriend(user.getId(), friendId));
         return user;
     }
 
+    // Друзья принадлежат хранилищу: новый объект получает текущее множество, чтобы не потерять параллельные изменения
     @Override
     public User update(User newUser) {
-        users.put(newUser.getId(), newUser);
+        users.compute(newUser.getId(), (id, oldUser) -> {
+            newUser.setFriends(oldUser == null ? concurrentCopy(newUser.getFriends()) : oldUser.getFriends());
+            if (oldUser != null && oldUser.getEmail() != null) {
+                emailToId.remove(oldUser.getEmail(), id);
+            }
+            if (newUser.getEmail() != null) {
+                emailToId.put(newUser.getEmail(), id);
+            }
+            return newUser;
+        });
         return newUser;
     }
 
     @Override
     public void delete(long id) {
-        users.remove(id);
+        User user = users.remove(id);
+        if (user != null && user.getEmail() != null) {
+            emailToId.remove(user.getEmail(), id);
+        }
+        friendGraph.deleteUser(id);
     }
 
     @Override
     public Optional<User> findEqual(User user) {
-            return users.values().stream()
-                    .filter(u -> u.equals(user))
-                    .findFirst();
+        return users.values().stream()
+                .filter(u -> u.equals(user))
+                .findFirst();
+    }
+
+    @Override
+    public List<User> findFriends(long userId) {
+        return findByIdsInOrder(friendGraph.findFriendIds(userId));
+    }
+
+    @Override
+    public int countFriends(long userId) {
+        return friendGraph.countFriends(userId);
+    }
+
+    @Override
+    public List<User> findCommonFriends(long userId, long otherId, long afterId, int limit) {
+        return findByIdsInOrder(friendGraph.findCommonFriendIds(userId, otherId, afterId, limit));
+    }
+
+    @Override
+    public List<User> findFriendSuggestions(long userId, int limit) {
+        return findByIdsInOrder(friendGraph.suggestFriendIds(userId, limit));
+    }
+
+    @Override
+    public List<User> findFriendPath(long userId, long otherId, int maxLength) {
+        return findByIdsInOrder(friendGraph.findPath(userId, otherId, maxLength));
+    }
+
+    private List<User> findByIdsInOrder(long[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(users::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Override
     public User addFriend(long userId, long friendId) {
-        User user = users.get(userId);
-        user.getFriends().add(friendId);
-        users.get(friendId).getFriends().add(userId);
+        users.computeIfPresent(friendId, (id, friend) -> {
+            friend.getFriends().add(userId);
+            return friend;
+        });
+        User user = users.computeIfPresent(userId, (id, u) -> {
+            u.getFriends().add(friendId);
+            return u;
+        });
+        if (user != null) {
+            friendGraph.addFriend(userId, friendId);
+            friendGraph.addFriend(friendId, userId);
+        }
         return user;
     }
 
     @Override
     public User deleteFriend(long userId, long friendId) {
-        User user = users.get(userId);
-        user.getFriends().remove(friendId);
-        users.get(friendId).getFriends().remove(userId);
+        users.computeIfPresent(friendId, (id, friend) -> {
+            friend.getFriends().remove(userId);
+            return friend;
+        });
+        User user = users.computeIfPresent(userId, (id, u) -> {
+            u.getFriends().remove(friendId);
+            return u;
+        });
+        friendGraph.deleteFriend(userId, friendId);
+        friendGraph.deleteFriend(friendId, userId);
         return user;
     }
 
-    private long getNextId() {
-        long currentMaxId = users.keySet().stream().mapToLong(id -> id).max().orElse(0);
-        return ++currentMaxId;
+    private static Set<Long> concurrentCopy(Set<Long> ids) {
+        Set<Long> copy = ConcurrentHashMap.newKeySet();
+        if (ids != null) {
+            copy.addAll(ids);
+        }
+        return copy;
     }
 }
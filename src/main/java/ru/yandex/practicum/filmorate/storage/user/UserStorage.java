@@ -3,12 +3,27 @@ package ru.yandex.practicum.filmorate.storage.user;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.Storage;
 
-import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface UserStorage extends Storage<User> {
 
-    List<User> findByIds(Collection<Long> ids);
+    // Id пользователя с таким email без загрузки самого пользователя и его друзей
+    Optional<Long> findIdByEmail(String email);
+
+    // Друзья пользователя по возрастанию id
+    List<User> findFriends(long userId);
+
+    int countFriends(long userId);
+
+    // Общие друзья двух пользователей с id больше afterId, по возрастанию id
+    List<User> findCommonFriends(long userId, long otherId, long afterId, int limit);
+
+    // Рекомендации друзей по убыванию числа общих друзей
+    List<User> findFriendSuggestions(long userId, int limit);
+
+    // Кратчайшая цепочка друзей от userId до otherId включительно; пустая, если её нет в пределах maxLength рёбер
+    List<User> findFriendPath(long userId, long otherId, int maxLength);
 
     User addFriend(long userId, long friendId);
 
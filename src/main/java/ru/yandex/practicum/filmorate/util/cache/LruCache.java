@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.util.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Кэш записей по id не больше maxSize штук, при переполнении вытесняется запись, которую дольше всех не читали.
+ * Загрузка, начатая до {@link #invalidate(long)} того же id, в кэш не попадает. Версии для этой проверки
+ * хранятся по полосам id, поэтому частые изменения одних записей не мешают кэшировать остальные.
+ * При maxSize = 0 кэш выключен: каждое чтение идёт в хранилище.
+ */
+public class LruCache<T> {
+    private static final int VERSION_STRIPES = 64;
+
+    private final int maxSize;
+    // порядок доступа: первой идёт запись, которую дольше всех не читали; доступ только под this
+    private final Map<Long, T> entries;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LruCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                if (size() <= LruCache.this.maxSize) {
+                    return false;
+                }
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public Optional<T> get(long id, LongFunction<Optional<T>> loader) {
+        if (!isEnabled()) {
+            return loader.apply(id);
+        }
+        T cached;
+        synchronized (this) {
+            cached = entries.get(id);
+        }
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        int stripe = stripe(id);
+        long loadedVersion = versions.get(stripe);
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(value -> {
+            synchronized (this) {
+                if (versions.get(stripe) == loadedVersion) {
+                    entries.put(id, value);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    public synchronized void invalidate(long id) {
+        versions.incrementAndGet(stripe(id));
+        entries.remove(id);
+    }
+
+    public synchronized void clear() {
+        for (int stripe = 0; stripe < VERSION_STRIPES; stripe++) {
+            versions.incrementAndGet(stripe);
+        }
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private static int stripe(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.util.cache;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Кэш редко меняющегося справочника: целиком загружается из хранилища, при промахе по id читает одну запись.
+ * После {@link #invalidate(long)} полный список перечитывается при следующем обращении к нему.
+ * Запись, прочитанная до инвалидации, в кэш не попадает: это отслеживается по номеру версии.
+ */
+public class ReadThroughCache<T> {
+    private final ToLongFunction<T> idExtractor;
+    private final LongFunction<Optional<T>> loader;
+    private final Supplier<List<T>> allLoader;
+
+    private final NavigableMap<Long, T> entries = new ConcurrentSkipListMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean complete;
+
+    public ReadThroughCache(ToLongFunction<T> idExtractor, LongFunction<Optional<T>> loader,
+                            Supplier<List<T>> allLoader) {
+        this.idExtractor = idExtractor;
+        this.loader = loader;
+        this.allLoader = allLoader;
+    }
+
+    public Optional<T> get(long id) {
+        T cached = entries.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long loadedVersion = version.get();
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(value -> {
+            synchronized (this) {
+                if (version.get() == loadedVersion) {
+                    entries.put(id, value);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    // id, которых нет в кэше; без обращения к хранилищу
+    public Set<Long> findUncached(Collection<Long> ids) {
+        Set<Long> uncached = new TreeSet<>();
+        for (long id : ids) {
+            if (!entries.containsKey(id)) {
+                uncached.add(id);
+            }
+        }
+        return uncached;
+    }
+
+    public List<T> getAll() {
+        if (!complete) {
+            preload();
+        }
+        if (!complete) {
+            // справочник изменился во время загрузки, отдаём прочитанное из хранилища в обход кэша
+            return allLoader.get().stream()
+                    .sorted(Comparator.comparingLong(idExtractor))
+                    .toList();
+        }
+        return List.copyOf(entries.values());
+    }
+
+    public List<T> getPage(long afterId, int limit) {
+        return getAll().stream()
+                .filter(value -> idExtractor.applyAsLong(value) > afterId)
+                .limit(limit)
+                .toList();
+    }
+
+    public void preload() {
+        long loadedVersion = version.get();
+        List<T> all = allLoader.get();
+        synchronized (this) {
+            if (version.get() != loadedVersion) {
+                return;
+            }
+            entries.clear();
+            all.forEach(value -> entries.put(idExtractor.applyAsLong(value), value));
+            complete = true;
+        }
+    }
+
+    public synchronized void invalidate(long id) {
+        version.incrementAndGet();
+        complete = false;
+        entries.remove(id);
+    }
+}
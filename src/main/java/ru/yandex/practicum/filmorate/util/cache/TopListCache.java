@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.util.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Кэш списков первых N элементов по ключу. Запрос меньшего N отвечается началом уже загруженного списка,
+ * большего - загрузкой, которая заменяет список. После ttl список продолжает отдаваться, а пересчитывает его
+ * один виртуальный поток на ключ; ошибка пересчёта оставляет прежний список до следующей попытки.
+ * При ttl = 0 кэш выключен: каждый вызов идёт в загрузчик.
+ */
+@Slf4j
+public class TopListCache<K, T> {
+    private final long ttlNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+    private final Map<K, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+
+    public TopListCache(long ttlNanos, int maxKeys) {
+        this(ttlNanos, maxKeys, System::nanoTime);
+    }
+
+    public TopListCache(long ttlNanos, int maxKeys, LongSupplier nanoClock) {
+        this.ttlNanos = ttlNanos;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+    }
+
+    // loader(key, count) возвращает первые count элементов
+    public List<T> get(K key, int count, BiFunction<K, Integer, List<T>> loader) {
+        if (ttlNanos <= 0) {
+            return loader.apply(key, count);
+        }
+        Entry<T> entry = entries.get(key);
+        if (entry == null || !entry.covers(count)) {
+            entry = load(key, count, loader);
+        } else if (nanoClock.getAsLong() - entry.loadedAt() > ttlNanos) {
+            refreshInBackground(key, entry.count(), loader);
+        }
+        return entry.items().size() <= count ? entry.items() : entry.items().subList(0, count);
+    }
+
+    private Entry<T> load(K key, int count, BiFunction<K, Integer, List<T>> loader) {
+        Entry<T> loaded = new Entry<>(count, List.copyOf(loader.apply(key, count)), nanoClock.getAsLong());
+        if (entries.size() >= maxKeys && !entries.containsKey(key)) {
+            // ключи - фильтры списка, их немного; переполнение означает перебор редких фильтров
+            entries.clear();
+        }
+        entries.merge(key, loaded, (current, fresh) -> current.count() > fresh.count() ? current : fresh);
+        return loaded;
+    }
+
+    private void refreshInBackground(K key, int count, BiFunction<K, Integer, List<T>> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        Thread.ofVirtual().name("top-list-refresh").start(() -> {
+            try {
+                load(key, count, loader);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить список {}: {}", key, e.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    private record Entry<T>(int count, List<T> items, long loadedAt) {
+
+        // список короче запрошенного содержит все элементы и подходит для любого count
+        boolean covers(int requested) {
+            return count >= requested || items.size() < count;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.util.collection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Рейтинг идентификаторов по счётчику: изменение счётчика за O(log n), первые N позиций за O(N).
+ * При равенстве счётчиков выше стоит меньший идентификатор.
+ */
+public class Leaderboard {
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::score).reversed()
+            .thenComparingLong(Entry::id);
+
+    private final Map<Long, Long> scores = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(ORDER);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(long id, long delta) {
+        lock.writeLock().lock();
+        try {
+            Long score = scores.get(id);
+            if (score != null) {
+                ranking.remove(new Entry(id, score));
+            }
+            long newScore = Math.max(0, (score == null ? 0 : score) + delta);
+            scores.put(id, newScore);
+            ranking.add(new Entry(id, newScore));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void set(long id, long score) {
+        lock.writeLock().lock();
+        try {
+            Long oldScore = scores.put(id, score);
+            if (oldScore != null) {
+                ranking.remove(new Entry(id, oldScore));
+            }
+            ranking.add(new Entry(id, score));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Long score = scores.remove(id);
+            if (score != null) {
+                ranking.remove(new Entry(id, score));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void reset(Map<Long, Long> newScores) {
+        lock.writeLock().lock();
+        try {
+            scores.clear();
+            ranking.clear();
+            newScores.forEach((id, score) -> {
+                scores.put(id, score);
+                ranking.add(new Entry(id, score));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long score(long id) {
+        lock.readLock().lock();
+        try {
+            return scores.getOrDefault(id, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return scores.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return scores.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> top(int count) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(Math.min(count, scores.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (ids.size() < count && iterator.hasNext()) {
+                ids.add(iterator.next().id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Первые count идентификаторов, подходящих под filter, в порядке рейтинга
+    public List<Long> top(int count, LongPredicate filter) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(Math.min(count, scores.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (ids.size() < count && iterator.hasNext()) {
+                long id = iterator.next().id();
+                if (filter.test(id)) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record Entry(long id, long score) {
+    }
+}
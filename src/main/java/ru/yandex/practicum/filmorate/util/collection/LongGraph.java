@@ -0,0 +1,331 @@
+package ru.yandex.practicum.filmorate.util.collection;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ориентированный граф на примитивных long без упаковки в {@code Long}. Вершины лежат в хэш-таблице
+ * с открытой адресацией, для каждой хранятся отсортированные массивы исходящих и входящих рёбер.
+ * Массивы смежности после публикации не меняются (копирование при записи), поэтому полученный массив
+ * можно читать без блокировки, но изменять его нельзя.
+ */
+public class LongGraph {
+    private static final long[] EMPTY = new long[0];
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Table table = new Table(MIN_CAPACITY);
+
+    // Заменяет граф рёбрами from[i] -> to[i], i < count; повторяющиеся рёбра схлопываются
+    public void load(long[] from, long[] to, int count) {
+        Table loaded = Table.build(from, to, count);
+        lock.writeLock().lock();
+        try {
+            table = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean addEdge(long from, long to) {
+        lock.writeLock().lock();
+        try {
+            int fromSlot = table.insert(from);
+            long[] successors = insertSorted(table.successors[fromSlot], to);
+            if (successors == table.successors[fromSlot]) {
+                return false;
+            }
+            table.successors[fromSlot] = successors;
+            int toSlot = table.insert(to);
+            table.predecessors[toSlot] = insertSorted(table.predecessors[toSlot], from);
+            table.edgeCount++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeEdge(long from, long to) {
+        lock.writeLock().lock();
+        try {
+            int fromSlot = table.indexOf(from);
+            if (fromSlot < 0) {
+                return false;
+            }
+            long[] successors = removeSorted(table.successors[fromSlot], to);
+            if (successors == table.successors[fromSlot]) {
+                return false;
+            }
+            table.successors[fromSlot] = successors;
+            int toSlot = table.indexOf(to);
+            table.predecessors[toSlot] = removeSorted(table.predecessors[toSlot], from);
+            table.edgeCount--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeVertex(long vertex) {
+        lock.writeLock().lock();
+        try {
+            int slot = table.indexOf(vertex);
+            if (slot < 0) {
+                return;
+            }
+            long[] successors = table.successors[slot];
+            long[] predecessors = table.predecessors[slot];
+            boolean hasLoop = Arrays.binarySearch(successors, vertex) >= 0;
+            for (long to : successors) {
+                if (to != vertex) {
+                    int toSlot = table.indexOf(to);
+                    table.predecessors[toSlot] = removeSorted(table.predecessors[toSlot], vertex);
+                }
+            }
+            for (long from : predecessors) {
+                if (from != vertex) {
+                    int fromSlot = table.indexOf(from);
+                    table.successors[fromSlot] = removeSorted(table.successors[fromSlot], vertex);
+                }
+            }
+            // петля vertex -> vertex учтена в обоих массивах
+            table.edgeCount -= successors.length + predecessors.length - (hasLoop ? 1 : 0);
+            table.delete(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long[] successors(long vertex) {
+        lock.readLock().lock();
+        try {
+            int slot = table.indexOf(vertex);
+            return slot < 0 ? EMPTY : table.successors[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] predecessors(long vertex) {
+        lock.readLock().lock();
+        try {
+            int slot = table.indexOf(vertex);
+            return slot < 0 ? EMPTY : table.predecessors[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int outDegree(long vertex) {
+        return successors(vertex).length;
+    }
+
+    public boolean hasEdge(long from, long to) {
+        return Arrays.binarySearch(successors(from), to) >= 0;
+    }
+
+    public long edgeCount() {
+        lock.readLock().lock();
+        try {
+            return table.edgeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Оценка занимаемой памяти в байтах при сжатых ссылках: таблица вершин плюс массивы смежности
+    public long estimateBytes() {
+        lock.readLock().lock();
+        try {
+            final long arrayHeader = 16;
+            final long reference = 4;
+            long bytes = 3 * arrayHeader + table.keys.length * (Long.BYTES + 2 * reference);
+            for (int slot = 0; slot < table.keys.length; slot++) {
+                if (table.keys[slot] != FREE) {
+                    bytes += 2 * arrayHeader + (long) Long.BYTES
+                            * (table.successors[slot].length + table.predecessors[slot].length);
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long[] insertSorted(long[] array, long value) {
+        int index = Arrays.binarySearch(array, value);
+        if (index >= 0) {
+            return array;
+        }
+        index = -index - 1;
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static long[] removeSorted(long[] array, long value) {
+        int index = Arrays.binarySearch(array, value);
+        if (index < 0) {
+            return array;
+        }
+        if (array.length == 1) {
+            return EMPTY;
+        }
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    // Линейное пробирование; удаление со сдвигом следующих записей, без маркеров удаления
+    private static final class Table {
+        private long[] keys;
+        private long[][] successors;
+        private long[][] predecessors;
+        private int size;
+        private long edgeCount;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, FREE);
+            successors = new long[capacity][];
+            predecessors = new long[capacity][];
+        }
+
+        private static Table build(long[] from, long[] to, int count) {
+            Table table = new Table(MIN_CAPACITY);
+            for (int i = 0; i < count; i++) {
+                table.insert(from[i]);
+                table.insert(to[i]);
+            }
+            int[] outDegrees = new int[table.keys.length];
+            int[] inDegrees = new int[table.keys.length];
+            for (int i = 0; i < count; i++) {
+                outDegrees[table.indexOf(from[i])]++;
+                inDegrees[table.indexOf(to[i])]++;
+            }
+            for (int slot = 0; slot < table.keys.length; slot++) {
+                if (table.keys[slot] != FREE) {
+                    table.successors[slot] = new long[outDegrees[slot]];
+                    table.predecessors[slot] = new long[inDegrees[slot]];
+                }
+            }
+            Arrays.fill(outDegrees, 0);
+            Arrays.fill(inDegrees, 0);
+            for (int i = 0; i < count; i++) {
+                int fromSlot = table.indexOf(from[i]);
+                int toSlot = table.indexOf(to[i]);
+                table.successors[fromSlot][outDegrees[fromSlot]++] = to[i];
+                table.predecessors[toSlot][inDegrees[toSlot]++] = from[i];
+            }
+            for (int slot = 0; slot < table.keys.length; slot++) {
+                if (table.keys[slot] != FREE) {
+                    table.successors[slot] = sortDistinct(table.successors[slot]);
+                    table.predecessors[slot] = sortDistinct(table.predecessors[slot]);
+                    table.edgeCount += table.successors[slot].length;
+                }
+            }
+            return table;
+        }
+
+        private static long[] sortDistinct(long[] array) {
+            if (array.length == 0) {
+                return EMPTY;
+            }
+            Arrays.sort(array);
+            int size = 1;
+            for (int i = 1; i < array.length; i++) {
+                if (array[i] != array[size - 1]) {
+                    array[size++] = array[i];
+                }
+            }
+            return size == array.length ? array : Arrays.copyOf(array, size);
+        }
+
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != FREE) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int insert(long key) {
+            int slot = indexOf(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            slot = hash(key) & mask;
+            while (keys[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            successors[slot] = EMPTY;
+            predecessors[slot] = EMPTY;
+            size++;
+            return slot;
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (keys[next] == FREE) {
+                    break;
+                }
+                int home = hash(keys[next]) & mask;
+                boolean homeBetween = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+                if (!homeBetween) {
+                    keys[gap] = keys[next];
+                    successors[gap] = successors[next];
+                    predecessors[gap] = predecessors[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = FREE;
+            successors[gap] = null;
+            predecessors[gap] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[][] oldSuccessors = successors;
+            long[][] oldPredecessors = predecessors;
+            keys = new long[capacity];
+            Arrays.fill(keys, FREE);
+            successors = new long[capacity][];
+            predecessors = new long[capacity][];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (keys[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    successors[slot] = oldSuccessors[i];
+                    predecessors[slot] = oldPredecessors[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.util.collection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счётчики событий по ключам за скользящее окно из {@code bucketCount} корзин по {@code bucketMillis}.
+ * У каждого ключа с событиями в окне есть кольцо корзин, сумма по окну хранится в {@link Leaderboard}.
+ * Корзины, вышедшие из окна, вычитаются по спискам затронутых в них ключей, без обхода всех ключей,
+ * поэтому первые N позиций читаются за O(N) независимо от числа событий.
+ */
+public class SlidingWindowCounter {
+    private static final long[] EMPTY = new long[0];
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final Map<Long, int[]> rings = new HashMap<>();
+    // ключи, получившие события в корзине слота; повторы допустимы, при вычитании второй раз вычитается 0
+    private final long[][] touchedKeys;
+    private final int[] touchedCounts;
+    private final Leaderboard totals = new Leaderboard();
+    private long currentBucket = Long.MIN_VALUE;
+
+    public SlidingWindowCounter(long bucketMillis, int bucketCount) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        touchedKeys = new long[bucketCount][];
+        Arrays.fill(touchedKeys, EMPTY);
+        touchedCounts = new int[bucketCount];
+    }
+
+    // Событие за время timeMillis; вычитание события, уже вышедшего из окна, ничего не меняет
+    public synchronized void add(long key, long timeMillis, int delta, long nowMillis) {
+        advance(Math.floorDiv(Math.max(timeMillis, nowMillis), bucketMillis));
+        long bucket = Math.floorDiv(timeMillis, bucketMillis);
+        if (bucket <= currentBucket - bucketCount) {
+            return;
+        }
+        int slot = (int) Math.floorMod(bucket, bucketCount);
+        int[] ring = rings.get(key);
+        int applied = Math.max(delta, ring == null ? 0 : -ring[slot]);
+        if (applied == 0) {
+            return;
+        }
+        if (ring == null) {
+            ring = new int[bucketCount];
+            rings.put(key, ring);
+        }
+        if (ring[slot] == 0) {
+            touch(slot, key);
+        }
+        ring[slot] += applied;
+        addTotal(key, applied);
+    }
+
+    public synchronized void remove(long key) {
+        rings.remove(key);
+        totals.remove(key);
+    }
+
+    public synchronized List<Long> top(int count, long nowMillis) {
+        advance(Math.floorDiv(nowMillis, bucketMillis));
+        return totals.top(count);
+    }
+
+    public synchronized long count(long key, long nowMillis) {
+        advance(Math.floorDiv(nowMillis, bucketMillis));
+        return totals.score(key);
+    }
+
+    // Заменяет содержимое событиями keys[i] за время timesMillis[i], i < size
+    public synchronized void reset(long[] keys, long[] timesMillis, int size, long nowMillis) {
+        rings.clear();
+        totals.reset(Map.of());
+        Arrays.fill(touchedKeys, EMPTY);
+        Arrays.fill(touchedCounts, 0);
+        currentBucket = Math.floorDiv(nowMillis, bucketMillis);
+        for (int i = 0; i < size; i++) {
+            add(keys[i], timesMillis[i], 1, nowMillis);
+        }
+    }
+
+    private void advance(long bucket) {
+        if (currentBucket == Long.MIN_VALUE) {
+            currentBucket = bucket;
+            return;
+        }
+        if (bucket <= currentBucket) {
+            return;
+        }
+        // выходят корзины с номерами (currentBucket - bucketCount, bucket - bucketCount], но не больше одного круга
+        long from = Math.max(currentBucket - bucketCount + 1, bucket - 2L * bucketCount + 1);
+        for (long expired = from; expired <= bucket - bucketCount; expired++) {
+            expire((int) Math.floorMod(expired, bucketCount));
+        }
+        currentBucket = bucket;
+    }
+
+    private void expire(int slot) {
+        for (int i = 0; i < touchedCounts[slot]; i++) {
+            long key = touchedKeys[slot][i];
+            int[] ring = rings.get(key);
+            if (ring != null && ring[slot] != 0) {
+                int count = ring[slot];
+                ring[slot] = 0;
+                addTotal(key, -count);
+            }
+        }
+        touchedKeys[slot] = EMPTY;
+        touchedCounts[slot] = 0;
+    }
+
+    private void addTotal(long key, int delta) {
+        totals.add(key, delta);
+        if (totals.score(key) == 0) {
+            totals.remove(key);
+            rings.remove(key);
+        }
+    }
+
+    private void touch(int slot, long key) {
+        if (touchedCounts[slot] == touchedKeys[slot].length) {
+            touchedKeys[slot] = Arrays.copyOf(touchedKeys[slot], Math.max(16, touchedCounts[slot] * 2));
+        }
+        touchedKeys[slot][touchedCounts[slot]++] = key;
+    }
+}
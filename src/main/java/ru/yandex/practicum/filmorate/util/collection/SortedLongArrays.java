@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * Операции над отсортированными по возрастанию массивами идентификаторов без упаковки в {@code Long}.
+ */
+public final class SortedLongArrays {
+    private SortedLongArrays() {
+    }
+
+    public static long[] of(long[] ids) {
+        long[] result = ids.clone();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Пересечение слиянием за O(n + m): не больше {@code limit} общих значений, строго больших {@code after}.
+     */
+    public static long[] intersect(long[] first, long[] second, long after, int limit) {
+        long[] result = new long[Math.min(limit, Math.min(first.length, second.length))];
+        int i = lowerBound(first, after);
+        int j = lowerBound(second, after);
+        int size = 0;
+        while (i < first.length && j < second.length && size < result.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    // индекс первого элемента, строго большего value
+    private static int lowerBound(long[] array, long value) {
+        int low = 0;
+        int high = array.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
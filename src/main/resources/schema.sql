@@ -22,7 +22,8 @@ CREATE TABLE IF NOT EXISTS films
     description  varchar,
     release_date date,
     duration     integer,
-    rating_id    integer
+    rating_id    integer,
+    like_count   integer DEFAULT 0 NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS genres
@@ -53,7 +54,57 @@ CREATE TABLE IF NOT EXISTS likes
     PRIMARY KEY (user_id, film_id)
 );
 
+-- в базе, созданной до счётчика, столбец добавляется пустым и один раз заполняется по таблице likes;
+-- после этого пустых значений нет, и UPDATE ничего не меняет
+ALTER TABLE films
+    ADD COLUMN IF NOT EXISTS like_count integer;
+
+UPDATE films AS f
+SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id)
+WHERE like_count IS NULL;
+
+ALTER TABLE films
+    ALTER COLUMN like_count SET DEFAULT 0;
+
+ALTER TABLE films
+    ALTER COLUMN like_count SET NOT NULL;
+
+ALTER TABLE films
+    ADD COLUMN IF NOT EXISTS name_key varchar GENERATED ALWAYS AS (LOWER(TRIM(REGEXP_REPLACE(name, '\s+', ' '))));
+
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS genre_film_film_id_idx ON genre_film (film_id, genre_id);
+CREATE INDEX IF NOT EXISTS likes_film_id_idx ON likes (film_id, user_id);
+CREATE INDEX IF NOT EXISTS likes_created_at_idx ON likes (created_at);
+CREATE INDEX IF NOT EXISTS friends_offered_by_idx ON friends (offered_by, candidate_id);
+CREATE INDEX IF NOT EXISTS friends_candidate_id_idx ON friends (candidate_id, offered_by);
+CREATE INDEX IF NOT EXISTS films_rating_id_idx ON films (rating_id);
+-- Базы, созданные до уникального индекса, могут содержать одинаковые фильмы: из каждой группы
+-- название сохраняет фильм с наименьшим id, к названиям остальных дописывается их id
+UPDATE films AS f
+SET name = TRIM(f.name) || ' (' || f.id || ')'
+WHERE EXISTS (SELECT 1
+              FROM films AS d
+              WHERE d.name_key = f.name_key
+                AND d.release_date = f.release_date
+                AND d.id < f.id);
+CREATE UNIQUE INDEX IF NOT EXISTS films_name_key_release_date_uq ON films (name_key, release_date);
+DROP INDEX IF EXISTS users_email_idx;
+-- email сохраняет пользователь с наименьшим id, остальным с тем же email он заменяется
+-- на заметный и уникальный адрес, который можно исправить через PUT /users
+UPDATE users AS u
+SET email = 'duplicate-' || u.id || '-' || u.email
+WHERE EXISTS (SELECT 1
+              FROM users AS d
+              WHERE d.email = u.email
+                AND d.id < u.id);
+CREATE UNIQUE INDEX IF NOT EXISTS users_email_uq ON users (email);
+CREATE INDEX IF NOT EXISTS genres_name_idx ON genres (name);
+CREATE INDEX IF NOT EXISTS ratings_name_idx ON ratings (name);
+
 COMMENT ON COLUMN films.duration IS 'In minutes';
+COMMENT ON COLUMN films.like_count IS 'Denormalized COUNT(*) of likes, see DbFilmStorage.repairLikeCount';
+COMMENT ON COLUMN films.name_key IS 'Lower-case name with collapsed whitespace, films are unique by (name_key, release_date)';
 
 ALTER TABLE likes
     ADD FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE;
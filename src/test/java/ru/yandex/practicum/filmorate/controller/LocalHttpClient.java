@@ -49,6 +49,20 @@ abstract class LocalHttpClient {
         }
     }
 
+    public HttpResponse<String> sendGetRequest(String uri, String accept) {
+        try {
+            URI url = URI.create(uri);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(url)
+                    .header("Accept", accept)
+                    .GET()
+                    .build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public HttpResponse<String> sendPostRequest(String uri, String body) {
         try {
             URI url = URI.create(uri);
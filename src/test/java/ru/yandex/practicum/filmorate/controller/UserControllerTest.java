@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import java.net.http.HttpResponse;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class UserControllerTest extends LocalHttpClient {
     static final String URI = HOST + "/users";
@@ -69,4 +71,147 @@ class UserControllerTest extends LocalHttpClient {
 
         assertEquals(400, statusCode);
     }
+
+    @Test
+    void findAllShouldReturnPageWhenLimitIsSet() throws Exception {
+        sendPostRequest(URI, user.toString());
+        user.put("email", randomName + "-second@yandex.ru");
+        sendPostRequest(URI, user.toString());
+
+        HttpResponse<String> response = sendGetRequest(URI + "?limit=1");
+        JsonNode page = new ObjectMapper().readTree(response.body());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(1, page.size());
+
+        long lastId = page.get(0).get("id").asLong();
+        JsonNode nextPage = new ObjectMapper().readTree(sendGetRequest(URI + "?limit=1&after=" + lastId).body());
+        assertTrue(nextPage.get(0).get("id").asLong() > lastId);
+    }
+
+    @Test
+    void findAllShouldStreamNdjsonWhenRequested() throws Exception {
+        sendPostRequest(URI, user.toString());
+
+        HttpResponse<String> json = sendGetRequest(URI);
+        HttpResponse<String> ndjson = sendGetRequest(URI, "application/x-ndjson");
+
+        assertEquals(200, ndjson.statusCode());
+        assertTrue(json.body().startsWith("["));
+        assertEquals(new ObjectMapper().readTree(json.body()).size(), ndjson.body().lines().count());
+    }
+
+    @Test
+    void findFriendsShouldReturnAllFriends() throws Exception {
+        long userId = createUser("owner");
+        long firstFriendId = createUser("first");
+        long secondFriendId = createUser("second");
+        sendPutRequest(URI + "/" + userId + "/friends/" + secondFriendId, "");
+        sendPutRequest(URI + "/" + userId + "/friends/" + firstFriendId, "");
+
+        HttpResponse<String> response = sendGetRequest(URI + "/" + userId + "/friends");
+        JsonNode friends = new ObjectMapper().readTree(response.body());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(2, friends.size());
+        assertEquals(firstFriendId, friends.get(0).get("id").asLong());
+        assertEquals(secondFriendId, friends.get(1).get("id").asLong());
+        assertEquals("2", sendGetRequest(URI + "/" + userId + "/friends/count").body());
+    }
+
+    @Test
+    void findCommonFriendsShouldReturnPagesOfSharedFriends() throws Exception {
+        long userId = createUser("user");
+        long otherId = createUser("other");
+        long firstCommonId = createUser("first-common");
+        long secondCommonId = createUser("second-common");
+        long onlyUserFriendId = createUser("only-user");
+        for (long friendId : new long[]{secondCommonId, firstCommonId, onlyUserFriendId}) {
+            sendPutRequest(URI + "/" + userId + "/friends/" + friendId, "");
+        }
+        sendPutRequest(URI + "/" + otherId + "/friends/" + firstCommonId, "");
+        sendPutRequest(URI + "/" + otherId + "/friends/" + secondCommonId, "");
+
+        String commonUri = URI + "/" + userId + "/friends/common/" + otherId;
+        JsonNode common = new ObjectMapper().readTree(sendGetRequest(commonUri).body());
+        JsonNode firstPage = new ObjectMapper().readTree(sendGetRequest(commonUri + "?limit=1").body());
+        JsonNode secondPage = new ObjectMapper().readTree(
+                sendGetRequest(commonUri + "?limit=1&after=" + firstCommonId).body());
+
+        assertEquals(2, common.size());
+        assertEquals(firstCommonId, firstPage.get(0).get("id").asLong());
+        assertEquals(1, secondPage.size());
+        assertEquals(secondCommonId, secondPage.get(0).get("id").asLong());
+        assertEquals(404, sendGetRequest(URI + "/" + userId + "/friends/common/" + Long.MAX_VALUE).statusCode());
+    }
+
+    @Test
+    void friendSuggestionsShouldRankByMutualFriendsAndRefreshAfterAddFriend() throws Exception {
+        long userId = createUser("user");
+        long firstFriendId = createUser("first-friend");
+        long secondFriendId = createUser("second-friend");
+        long twoMutualId = createUser("two-mutual");
+        long oneMutualId = createUser("one-mutual");
+        sendPutRequest(URI + "/" + userId + "/friends/" + firstFriendId, "");
+        sendPutRequest(URI + "/" + userId + "/friends/" + secondFriendId, "");
+        sendPutRequest(URI + "/" + oneMutualId + "/friends/" + firstFriendId, "");
+        sendPutRequest(URI + "/" + twoMutualId + "/friends/" + firstFriendId, "");
+        sendPutRequest(URI + "/" + twoMutualId + "/friends/" + secondFriendId, "");
+
+        String suggestionsUri = URI + "/" + userId + "/friends/suggestions";
+        JsonNode suggestions = new ObjectMapper().readTree(sendGetRequest(suggestionsUri).body());
+
+        assertEquals(2, suggestions.size());
+        assertEquals(twoMutualId, suggestions.get(0).get("id").asLong());
+        assertEquals(oneMutualId, suggestions.get(1).get("id").asLong());
+
+        sendPutRequest(URI + "/" + userId + "/friends/" + twoMutualId, "");
+        JsonNode refreshed = new ObjectMapper().readTree(sendGetRequest(suggestionsUri).body());
+
+        assertEquals(1, refreshed.size());
+        assertEquals(oneMutualId, refreshed.get(0).get("id").asLong());
+    }
+
+    @Test
+    void friendPathShouldReturnShortestChainWithinMaxLength() throws Exception {
+        long firstId = createUser("path-first");
+        long secondId = createUser("path-second");
+        long thirdId = createUser("path-third");
+        long lastId = createUser("path-last");
+        sendPutRequest(URI + "/" + firstId + "/friends/" + secondId, "");
+        sendPutRequest(URI + "/" + secondId + "/friends/" + thirdId, "");
+        sendPutRequest(URI + "/" + thirdId + "/friends/" + lastId, "");
+        sendPutRequest(URI + "/" + firstId + "/friends/" + thirdId, "");
+
+        String pathUri = URI + "/" + firstId + "/path/" + lastId;
+        JsonNode path = new ObjectMapper().readTree(sendGetRequest(pathUri).body());
+
+        assertEquals(3, path.size());
+        assertEquals(firstId, path.get(0).get("id").asLong());
+        assertEquals(thirdId, path.get(1).get("id").asLong());
+        assertEquals(lastId, path.get(2).get("id").asLong());
+        assertEquals(0, new ObjectMapper().readTree(sendGetRequest(pathUri + "?maxLength=1").body()).size());
+        assertEquals(404, sendGetRequest(URI + "/" + firstId + "/path/" + Long.MAX_VALUE).statusCode());
+    }
+
+    @Test
+    void emailShouldStayUniqueOnCreateAndUpdate() throws Exception {
+        long firstId = createUser("first");
+        String firstEmail = user.get("email").asText();
+        long secondId = createUser("second");
+
+        user.put("email", firstEmail);
+        assertEquals(409, sendPostRequest(URI, user.toString()).statusCode());
+
+        user.put("id", secondId);
+        assertEquals(409, sendPutRequest(URI, user.toString()).statusCode());
+
+        user.put("id", firstId);
+        assertEquals(200, sendPutRequest(URI, user.toString()).statusCode());
+    }
+
+    private long createUser(String suffix) throws Exception {
+        user.put("email", randomName + "-" + suffix + "@yandex.ru");
+        return new ObjectMapper().readTree(sendPostRequest(URI, user.toString()).body()).get("id").asLong();
+    }
 }
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FilmServiceTest {
+    private static final int THREADS = 32;
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    // каждый запрос к хранилищу считается и ждёт, пока тест его не отпустит
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage() {
+        @Override
+        public List<Film> findPopular(int count, PopularFilmsFilter filter) {
+            awaitRelease();
+            return super.findPopular(count, filter);
+        }
+
+        @Override
+        public Optional<Film> findById(long id) {
+            awaitRelease();
+            return super.findById(id);
+        }
+    };
+    private final FilmService filmService =
+            new FilmService(filmStorage, new InMemoryUserStorage(), null, null, Optional.empty(), 0);
+
+    @Test
+    void concurrentPopularReadsShouldShareOneQuery() throws Exception {
+        filmStorage.create(film());
+
+        List<Object> results = readConcurrently(() -> filmService.findPopular(Optional.of(10), PopularFilmsFilter.NONE));
+
+        assertThat(queries).hasValue(1);
+        assertThat(results).allSatisfy(result -> assertThat(result).isEqualTo(results.getFirst()));
+        // у каждого читателя свои экземпляры фильмов
+        assertThat(((List<?>) results.get(0)).getFirst()).isNotSameAs(((List<?>) results.get(1)).getFirst());
+        assertThat(filmService.findPopular(Optional.of(10), PopularFilmsFilter.NONE)).hasSize(1);
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void findPopularShouldRejectNonPositiveCountWithoutQuery() {
+        assertThatThrownBy(() -> filmService.findPopular(Optional.of(-1), PopularFilmsFilter.NONE))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> filmService.findPopular(Optional.of(0), PopularFilmsFilter.NONE))
+                .isInstanceOf(ValidationException.class);
+        assertThat(queries).hasValue(0);
+    }
+
+    @Test
+    void concurrentReadsOfMissingFilmShouldShareOneQueryAndError() throws Exception {
+        List<Object> results = readConcurrently(() -> {
+            try {
+                return filmService.findById(1L);
+            } catch (NotFoundException e) {
+                return e;
+            }
+        });
+
+        assertThat(queries).hasValue(1);
+        assertThat(results).allSatisfy(result -> assertThat(result).isInstanceOf(NotFoundException.class));
+    }
+
+    // Запрос отпускается, только когда ждут все потоки: один - в хранилище, остальные - результата его запроса
+    private List<Object> readConcurrently(Supplier<Object> read) throws Exception {
+        List<FutureTask<Object>> tasks = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            FutureTask<Object> task = new FutureTask<>(read::get);
+            Thread thread = new Thread(task);
+            tasks.add(task);
+            threads.add(thread);
+            thread.start();
+        }
+        while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        List<Object> results = new ArrayList<>();
+        for (FutureTask<Object> task : tasks) {
+            results.add(task.get());
+        }
+        return results;
+    }
+
+    private void awaitRelease() {
+        queries.incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Film film() {
+        return Film.builder()
+                .name("film")
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(Duration.ofMinutes(90))
+                .build();
+    }
+}
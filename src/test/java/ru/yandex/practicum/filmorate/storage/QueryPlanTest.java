@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.storage.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.DbGenreStorage;
+import ru.yandex.practicum.filmorate.storage.rating.DbRatingStorage;
+import ru.yandex.practicum.filmorate.storage.user.DbUserStorage;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Map.entry;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Строит план каждого запроса из констант *_QUERY хранилищ на заполненной базе и проверяет,
+ * что запрос не читает таблицу или индекс целиком. Полный проход допустим только для запросов
+ * из {@link #FULL_SCAN_ALLOWED}.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryPlanTest {
+    private static final List<Class<?>> STORAGES =
+            List.of(DbFilmStorage.class, DbUserStorage.class, DbGenreStorage.class, DbRatingStorage.class);
+    private static final Map<String, String> FULL_SCAN_ALLOWED = Map.ofEntries(
+            entry("DbFilmStorage.FIND_ALL_QUERY", "основа других запросов, отдельно не выполняется"),
+            entry("DbFilmStorage.FIND_GENRES_QUERY", "основа других запросов, отдельно не выполняется"),
+            entry("DbFilmStorage.FIND_ALL_ORDERED_QUERY", "GET /films без страницы отдаёт все фильмы"),
+            entry("DbFilmStorage.FIND_LIKES_COUNT_QUERY", "построение индекса популярности при старте"),
+            entry("DbFilmStorage.FIND_ALL_GENRE_IDS_QUERY", "построение индекса популярности при старте"),
+            entry("DbFilmStorage.FIND_ALL_LIKES_QUERY", "построение индекса похожих фильмов при старте"),
+            entry("DbFilmStorage.FIND_POPULAR_IDS_QUERY", "проход индекса like_count по порядку до LIMIT, только для сверки"),
+            entry("DbFilmStorage.REPAIR_LIKE_COUNT_QUERY", "пересчёт счётчиков по всей таблице при обслуживании"),
+            entry("DbUserStorage.FIND_ALL_QUERY", "GET /users без страницы отдаёт всех пользователей"),
+            entry("DbUserStorage.FIND_FRIEND_EDGES_QUERY", "построение графа дружбы при старте"),
+            entry("DbUserStorage.FIND_ALL_EMAILS_QUERY", "загрузка занятых email при старте"),
+            entry("DbGenreStorage.FIND_ALL_QUERY", "справочник целиком загружается в кэш"),
+            entry("DbRatingStorage.FIND_ALL_QUERY", "справочник целиком загружается в кэш"));
+    // таблица без условия или индекс без условия; у поиска по индексу в комментарии есть условие после двоеточия
+    private static final Pattern FULL_SCAN = Pattern.compile("/\\* PUBLIC\\.\\w+(\\.tableScan)? \\*/");
+    // для SELECT ... FROM FINAL TABLE (UPDATE ...) план строится по изменяющему запросу внутри
+    private static final Pattern DATA_CHANGE_DELTA = Pattern.compile("(?is)\\b(?:OLD|NEW|FINAL) TABLE \\((.*)\\)");
+    private static final int ROWS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO ratings(name) SELECT 'rating-' || x FROM SYSTEM_RANGE(1, 10)");
+        jdbcTemplate.update("INSERT INTO genres(name) SELECT 'genre-' || x FROM SYSTEM_RANGE(1, 10)");
+        jdbcTemplate.update("""
+                INSERT INTO users(name, email, login, birthday)
+                SELECT 'user-' || x, 'user-' || x || '@mail.ru', 'login-' || x, DATE '2000-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, ROWS);
+        jdbcTemplate.update("""
+                INSERT INTO films(name, description, release_date, duration, rating_id, like_count)
+                SELECT 'film-' || x, 'description', DATE '2000-01-01', 90, (SELECT MIN(id) FROM ratings), 0
+                FROM SYSTEM_RANGE(1, ?)
+                """, ROWS);
+        jdbcTemplate.update("""
+                INSERT INTO likes(user_id, film_id, created_at)
+                SELECT u.id, f.id, CURRENT_TIMESTAMP
+                FROM users AS u
+                JOIN films AS f ON MOD(u.id + f.id, 50) = 0
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO friends(offered_by, candidate_id, offered_at)
+                SELECT a.id, b.id, CURRENT_TIMESTAMP
+                FROM users AS a
+                JOIN users AS b ON MOD(a.id * 7 + b.id, 100) = 0
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO genre_film(genre_id, film_id)
+                SELECT g.id, f.id
+                FROM genres AS g
+                JOIN films AS f ON MOD(g.id + f.id, 3) = 0
+                """);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        List.of("likes", "friends", "genre_film", "films", "users", "genres", "ratings")
+                .forEach(table -> jdbcTemplate.update("DELETE FROM " + table));
+    }
+
+    @Test
+    void hotQueriesShouldNotScanWholeTables() throws IllegalAccessException {
+        List<String> violations = new ArrayList<>();
+        for (Class<?> storage : STORAGES) {
+            for (Field field : storage.getDeclaredFields()) {
+                if (!isQueryConstant(field)) {
+                    continue;
+                }
+                String name = storage.getSimpleName() + "." + field.getName();
+                field.setAccessible(true);
+                String plan = explain((String) field.get(null));
+                if (FULL_SCAN.matcher(plan).find() && !FULL_SCAN_ALLOWED.containsKey(name)) {
+                    violations.add(name + ":\n" + plan);
+                }
+            }
+        }
+
+        assertThat(violations).as("запросы с полным проходом таблицы").isEmpty();
+    }
+
+    /**
+     * Выборка лайкнувших читает лайки только фильмов пачки, по индексу likes_film_id_idx, но целиком:
+     * H2 вычисляет ROW_NUMBER() после чтения всех строк раздела и не берёт порядок из индекса
+     * (film_id, created_at), поэтому такой индекс не заводится. Стоимость промаха кэша фильма -
+     * чтение и сортировка всех его лайков.
+     */
+    @Test
+    void likesSampleShouldReadOnlyLikesOfBatch() throws Exception {
+        for (String name : List.of("FIND_LIKES_SAMPLE_BY_IDS_QUERY", "FIND_LIKES_SAMPLE_BY_RANGE_QUERY")) {
+            Field field = DbFilmStorage.class.getDeclaredField(name);
+            field.setAccessible(true);
+            assertThat(explain((String) field.get(null))).as(name).contains("PUBLIC.LIKES_FILM_ID_IDX: FILM_ID");
+        }
+    }
+
+    private static boolean isQueryConstant(Field field) {
+        return Modifier.isStatic(field.getModifiers())
+                && field.getType() == String.class
+                && field.getName().endsWith("_QUERY");
+    }
+
+    private String explain(String query) {
+        Matcher delta = DATA_CHANGE_DELTA.matcher(query);
+        String explained = delta.find() ? delta.group(1) : query;
+        return jdbcTemplate.execute("EXPLAIN " + explained, (PreparedStatement statement) -> {
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        });
+    }
+}
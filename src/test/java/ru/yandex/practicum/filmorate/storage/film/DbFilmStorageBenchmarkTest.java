@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.cache.LruCache;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Dfilmorate.benchmark=true -Dtest=DbFilmStorageBenchmarkTest
+// для сравнения без кэша фильмов: -Dfilmorate.films.cache.enabled=false
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@EnabledIfSystemProperty(named = "filmorate.benchmark", matches = "true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ContextConfiguration(classes = {DbFilmStorage.class, FilmPopularityIndex.class,
+        FilmSimilarityIndex.class, FilmTrendingIndex.class, FilmCache.class,
+        DbFilmStorageBenchmarkTest.RowCountingConfig.class})
+class DbFilmStorageBenchmarkTest {
+    private static final int FILMS_COUNT = 100_000;
+    private static final int USERS_COUNT = 1_000;
+    private static final int LIKES_PER_FILM = 5;
+    // популярные фильмы набирают больше лайков, чем помещается в выборку (по умолчанию 10)
+    private static final int POPULAR_FILMS = 1_000;
+    private static final int LIKES_PER_POPULAR_FILM = 50;
+    private static final int LIKES_SAMPLE_SIZE = 10;
+    private static final int GENRES_PER_FILM = 3;
+    private static final int RUNS = 3;
+    private static final int READS = 200_000;
+    private static final int HOT_FILMS = 1_000;
+
+    // Запрос, которым фильмы загружались до перехода на пакетную загрузку
+    private static final String CARTESIAN_QUERY = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.release_date,
+                   f.duration,
+                   f.rating_id,
+                   l.user_id AS liked_user_id,
+                   gf.genre_id,
+                   g.name AS genre_name,
+                   r.name AS rating_name,
+                   r.description AS rating_description
+            FROM films AS f
+            LEFT JOIN likes AS l ON f.id = l.film_id
+            LEFT JOIN genre_film AS gf ON f.id = gf.film_id
+            LEFT JOIN genres AS g ON g.id = gf.genre_id
+            LEFT JOIN ratings AS r ON r.id = f.rating_id
+            """;
+
+    private final DbFilmStorage filmStorage;
+    private final FilmCache filmCache;
+    private final RowCountingJdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO ratings (id, name) SELECT X, 'rating ' || X FROM SYSTEM_RANGE(1, 5)");
+        jdbcTemplate.update("INSERT INTO genres (id, name) SELECT X, 'genre ' || X FROM SYSTEM_RANGE(1, 6)");
+        jdbcTemplate.update("""
+                INSERT INTO users (id, name, login, email, birthday)
+                SELECT X, 'user ' || X, 'user' || X, 'user' || X || '@mail.com', DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, USERS_COUNT);
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, rating_id, like_count)
+                SELECT X, 'film ' || X, 'description', DATE '2000-01-01', 90, MOD(X, 5) + 1, ?
+                FROM SYSTEM_RANGE(1, ?)
+                """, LIKES_PER_FILM, FILMS_COUNT);
+        for (int i = 0; i < GENRES_PER_FILM; i++) {
+            jdbcTemplate.update("INSERT INTO genre_film (genre_id, film_id) SELECT MOD(X + ?, 6) + 1, X FROM SYSTEM_RANGE(1, ?)",
+                    i * 2, FILMS_COUNT);
+        }
+        for (int i = 0; i < LIKES_PER_FILM; i++) {
+            jdbcTemplate.update("""
+                    INSERT INTO likes (user_id, film_id, created_at)
+                    SELECT MOD(X + ?, ?) + 1, X, CURRENT_TIMESTAMP
+                    FROM SYSTEM_RANGE(1, ?)
+                    """, i * (USERS_COUNT / LIKES_PER_FILM), USERS_COUNT, FILMS_COUNT);
+        }
+        for (int i = LIKES_PER_FILM; i < LIKES_PER_POPULAR_FILM; i++) {
+            jdbcTemplate.update("""
+                    INSERT INTO likes (user_id, film_id, created_at)
+                    SELECT MOD(X + ?, ?) + 1, X, CURRENT_TIMESTAMP
+                    FROM SYSTEM_RANGE(1, ?)
+                    """, i * (USERS_COUNT / LIKES_PER_POPULAR_FILM), USERS_COUNT, POPULAR_FILMS);
+        }
+        jdbcTemplate.update("UPDATE films SET like_count = ? WHERE id <= ?", LIKES_PER_POPULAR_FILM, POPULAR_FILMS);
+    }
+
+    @Test
+    void batchHydrationShouldTransferLinearNumberOfRows() {
+        long cartesianRows = 0;
+        long cartesianNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            cartesianRows = loadCartesian();
+            cartesianNanos = Math.min(cartesianNanos, System.nanoTime() - start);
+        }
+
+        List<Film> films = List.of();
+        long batchRows = 0;
+        long batchQueries = 0;
+        long batchNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            jdbcTemplate.reset();
+            long start = System.nanoTime();
+            films = filmStorage.findAll();
+            batchNanos = Math.min(batchNanos, System.nanoTime() - start);
+            batchRows = jdbcTemplate.rows.get();
+            batchQueries = jdbcTemplate.queries.get();
+        }
+
+        log.info("films={} cartesian: rows={}, {} ms; batch: queries={}, rows={}, {} ms",
+                FILMS_COUNT, cartesianRows, cartesianNanos / 1_000_000, batchQueries, batchRows, batchNanos / 1_000_000);
+
+        long likeRows = (long) (FILMS_COUNT - POPULAR_FILMS) * LIKES_PER_FILM + (long) POPULAR_FILMS * LIKES_SAMPLE_SIZE;
+        assertThat(films).hasSize(FILMS_COUNT);
+        assertThat(films.getFirst().getGenres()).hasSize(GENRES_PER_FILM);
+        assertThat(films.getFirst().getLikes()).hasSize(LIKES_SAMPLE_SIZE);
+        assertThat(batchRows).isEqualTo((long) FILMS_COUNT * (1 + GENRES_PER_FILM) + likeRows);
+        // фильмы, жанры и лайки - по одному запросу на пачку, без запросов на отдельные фильмы
+        assertThat(batchQueries).isLessThanOrEqualTo(1 + 2L * Math.ceilDiv(FILMS_COUNT, 1000));
+        assertThat(cartesianRows).isEqualTo(((long) (FILMS_COUNT - POPULAR_FILMS) * LIKES_PER_FILM
+                + (long) POPULAR_FILMS * LIKES_PER_POPULAR_FILM) * GENRES_PER_FILM);
+    }
+
+    // 90% чтений приходится на HOT_FILMS фильмов, остальные - на случайные из всего каталога
+    @Test
+    void findByIdShouldServeHotFilmsFromCache() {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            long filmId = random.nextInt(10) < 9 ? random.nextInt(HOT_FILMS) + 1 : random.nextInt(FILMS_COUNT) + 1;
+            assertThat(filmStorage.findById(filmId)).isPresent();
+        }
+        long nanos = System.nanoTime() - start;
+
+        LruCache.Stats stats = filmCache.stats();
+        log.info("findById x{}: {} ms, {} us/read; cache hits={} misses={} hitRate={} evictions={}",
+                READS, nanos / 1_000_000, String.format("%.1f", nanos / 1_000.0 / READS),
+                stats.hits(), stats.misses(), String.format("%.2f", stats.hitRate()), stats.evictions());
+    }
+
+    private long loadCartesian() {
+        AtomicLong rows = new AtomicLong();
+        Map<Long, Set<Long>> filmToLikes = new HashMap<>();
+        jdbcTemplate.query(CARTESIAN_QUERY, rs -> {
+            rows.incrementAndGet();
+            filmToLikes.computeIfAbsent(rs.getLong("id"), id -> new HashSet<>()).add(rs.getLong("liked_user_id"));
+        });
+        return rows.get();
+    }
+
+    @TestConfiguration
+    static class RowCountingConfig {
+
+        @Bean
+        RowCountingJdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new RowCountingJdbcTemplate(dataSource);
+        }
+    }
+
+    // Считает запросы и строки, действительно прочитанные из результатов
+    static class RowCountingJdbcTemplate extends JdbcTemplate {
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+
+        RowCountingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        void reset() {
+            queries.set(0);
+            rows.set(0);
+        }
+
+        @Override
+        public <T> T query(String sql, ResultSetExtractor<T> rse) {
+            return super.query(sql, counting(rse));
+        }
+
+        @Override
+        public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) {
+            return super.query(psc, pss, counting(rse));
+        }
+
+        private <T> ResultSetExtractor<T> counting(ResultSetExtractor<T> rse) {
+            return rs -> {
+                queries.incrementAndGet();
+                return rse.extractData((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                            Object result;
+                            try {
+                                result = method.invoke(rs, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                                rows.incrementAndGet();
+                            }
+                            return result;
+                        }));
+            };
+        }
+    }
+}
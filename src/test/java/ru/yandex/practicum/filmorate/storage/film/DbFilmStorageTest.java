@@ -0,0 +1,410 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.rating.DbRatingStorage;
+import ru.yandex.practicum.filmorate.storage.user.DbUserStorage;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ContextConfiguration(classes = {DbFilmStorage.class, DbUserStorage.class, DbRatingStorage.class, FilmPopularityIndex.class,
+        FilmSimilarityIndex.class, FilmTrendingIndex.class, FilmCache.class})
+class DbFilmStorageTest {
+
+    private final DbFilmStorage filmStorage;
+    private final DbUserStorage userStorage;
+    private final DbRatingStorage ratingStorage;
+    private final FilmCache filmCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    private Rating rating;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        filmStorage.rebuildPopularityIndex();
+        filmStorage.rebuildSimilarityIndex();
+        filmStorage.rebuildTrendingIndex();
+        rating = ratingStorage.create(Rating.builder().name(UUID.randomUUID().toString()).build());
+    }
+
+    @Test
+    void findPopularShouldFollowLikesAndMatchDatabase() {
+        Film first = filmStorage.create(film());
+        Film second = filmStorage.create(film());
+        User user1 = userStorage.create(user());
+        User user2 = userStorage.create(user());
+
+        filmStorage.addLike(second.getId(), user1.getId());
+        filmStorage.addLike(second.getId(), user2.getId());
+        filmStorage.addLike(first.getId(), user1.getId());
+
+        List<Long> popularIds = filmStorage.findPopular(2).stream().map(Film::getId).toList();
+        assertThat(popularIds).containsExactly(second.getId(), first.getId());
+        assertThat(filmStorage.checkPopularityIndex(100)).isTrue();
+
+        filmStorage.deleteLike(second.getId(), user1.getId());
+        filmStorage.deleteLike(second.getId(), user2.getId());
+        userStorage.delete(user1.getId());
+
+        assertThat(filmStorage.checkPopularityIndex(100)).isTrue();
+    }
+
+    @Test
+    void cachedFilmShouldBeInvalidatedByItsOwnWritesOnly() {
+        Film film = filmStorage.create(film());
+        Film other = filmStorage.create(film());
+        User user = userStorage.create(user());
+        filmStorage.findById(film.getId());
+        filmStorage.findById(other.getId());
+        long hits = filmCache.stats().hits();
+
+        filmStorage.addLike(film.getId(), user.getId());
+        assertThat(filmStorage.findById(film.getId())).map(Film::getLikesCount).contains(1L);
+        assertThat(filmStorage.findById(other.getId())).isPresent();
+        assertThat(filmCache.stats().hits()).isEqualTo(hits + 1);
+
+        film.setName("renamed " + film.getName());
+        film.setGenres(new LinkedHashSet<>(List.of(genre())));
+        filmStorage.update(film);
+        assertThat(filmStorage.findById(film.getId())).hasValueSatisfying(cached -> {
+            assertThat(cached.getName()).isEqualTo(film.getName());
+            assertThat(cached.getGenres()).hasSize(1);
+        });
+
+        userStorage.delete(user.getId());
+        assertThat(filmStorage.findById(film.getId())).map(Film::getLikesCount).contains(0L);
+
+        filmStorage.delete(film.getId());
+        assertThat(filmStorage.findById(film.getId())).isEmpty();
+    }
+
+    @Test
+    void cachedFilmShouldNotBeChangedThroughReturnedCopies() {
+        Film film = filmStorage.create(film());
+        User user = userStorage.create(user());
+        filmStorage.addLike(film.getId(), user.getId());
+
+        Film first = filmStorage.findById(film.getId()).orElseThrow();
+        first.getLikes().add(Long.MAX_VALUE);
+        first.getGenres().add(genre());
+        first.getMpa().setName("changed");
+
+        assertThat(filmStorage.findById(film.getId())).hasValueSatisfying(cached -> {
+            assertThat(cached).isNotSameAs(first);
+            assertThat(cached.getLikes()).containsExactly(user.getId());
+            assertThat(cached.getGenres()).isEmpty();
+            assertThat(cached.getMpa().getName()).isEqualTo(rating.getName());
+        });
+    }
+
+    @Test
+    void findEqualShouldIgnoreCaseAndSpacesAndCreateShouldRejectDuplicate() {
+        Film film = film();
+        film.setName("The  Film " + film.getName());
+        long filmId = filmStorage.create(film).getId();
+
+        Film same = film();
+        same.setName(" the film\t" + film.getName().substring("The  Film ".length()).toUpperCase());
+        Film otherDate = film();
+        otherDate.setName(film.getName());
+        otherDate.setReleaseDate(film.getReleaseDate().plusDays(1));
+
+        assertThat(filmStorage.findEqual(same)).map(Film::getId).contains(filmId);
+        assertThat(filmStorage.findEqual(otherDate)).isEmpty();
+        assertThatThrownBy(() -> filmStorage.create(same)).isInstanceOf(DuplicatedDataException.class);
+        assertThat(filmStorage.create(otherDate).getId()).isNotEqualTo(filmId);
+    }
+
+    @Test
+    void trendingShouldCountLikesInsideWindowAndSurviveRebuild() {
+        long recent = filmStorage.create(film()).getId();
+        long old = filmStorage.create(film()).getId();
+        long user1 = userStorage.create(user()).getId();
+        long user2 = userStorage.create(user()).getId();
+        filmStorage.addLike(recent, user1);
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id, created_at) VALUES (?, ?, ?), (?, ?, ?)",
+                old, user1, Timestamp.from(Instant.now().minus(Duration.ofHours(3))),
+                old, user2, Timestamp.from(Instant.now().minus(Duration.ofHours(30))));
+        filmStorage.rebuildTrendingIndex();
+
+        assertThat(filmStorage.findTrending(TrendingWindow.HOUR, 10)).extracting(Film::getId).containsExactly(recent);
+        assertThat(filmStorage.findTrending(TrendingWindow.DAY, 10)).extracting(Film::getId).containsExactly(recent, old);
+        assertThat(filmStorage.findTrending(TrendingWindow.WEEK, 10)).extracting(Film::getId).containsExactly(old, recent);
+
+        // удаление вычитается из корзины времени лайка, а не текущей
+        filmStorage.deleteLike(old, user1);
+        assertThat(filmStorage.findTrending(TrendingWindow.DAY, 10)).extracting(Film::getId).containsExactly(recent);
+        filmStorage.addLike(old, user1);
+        assertThat(filmStorage.findTrending(TrendingWindow.HOUR, 10)).extracting(Film::getId).containsExactly(recent, old);
+        assertThat(filmStorage.findTrending(TrendingWindow.WEEK, 10)).extracting(Film::getId).containsExactly(old, recent);
+
+        userStorage.delete(user1);
+        assertThat(filmStorage.findTrending(TrendingWindow.DAY, 10)).isEmpty();
+        assertThat(filmStorage.findTrending(TrendingWindow.WEEK, 10)).extracting(Film::getId).containsExactly(old);
+    }
+
+    @Test
+    void similarAndRecommendationsShouldFollowLikesAndMatchRebuild() {
+        long a = filmStorage.create(film()).getId();
+        long b = filmStorage.create(film()).getId();
+        long c = filmStorage.create(film()).getId();
+        long d = filmStorage.create(film()).getId();
+        long user1 = userStorage.create(user()).getId();
+        long user2 = userStorage.create(user()).getId();
+        long user3 = userStorage.create(user()).getId();
+        List.of(a, b, c).forEach(filmId -> filmStorage.addLike(filmId, user1));
+        List.of(a, b).forEach(filmId -> filmStorage.addLike(filmId, user2));
+        List.of(a, d).forEach(filmId -> filmStorage.addLike(filmId, user3));
+
+        assertThat(filmStorage.findSimilar(a, 10)).extracting(Film::getId).containsExactly(b, c, d);
+        assertThat(filmStorage.findSimilar(a, 1)).extracting(Film::getId).containsExactly(b);
+        assertThat(filmStorage.findRecommendations(user2, 10)).extracting(Film::getId).containsExactly(c, d);
+
+        filmStorage.deleteLike(b, user1);
+        filmStorage.delete(c);
+
+        assertThat(filmStorage.findSimilar(a, 10)).extracting(Film::getId).containsExactly(b, d);
+        assertThat(filmStorage.findRecommendations(user2, 10)).extracting(Film::getId).containsExactly(d);
+        filmStorage.rebuildSimilarityIndex();
+        assertThat(filmStorage.findSimilar(a, 10)).extracting(Film::getId).containsExactly(b, d);
+        assertThat(filmStorage.findRecommendations(user2, 10)).extracting(Film::getId).containsExactly(d);
+    }
+
+    @Test
+    void filteredPopularShouldFollowLikesAndFilmEdits() {
+        Genre drama = genre();
+        Genre comedy = genre();
+        Rating otherRating = ratingStorage.create(Rating.builder().name(UUID.randomUUID().toString()).build());
+        long a = filmStorage.create(film(2000, rating, drama)).getId();
+        long b = filmStorage.create(film(2010, otherRating, comedy)).getId();
+        Film c = filmStorage.create(film(2010, rating, drama, comedy));
+        long user1 = userStorage.create(user()).getId();
+        long user2 = userStorage.create(user()).getId();
+        filmStorage.addLike(a, user1);
+        filmStorage.addLike(a, user2);
+        filmStorage.addLike(b, user1);
+
+        assertThat(popularIds(new PopularFilmsFilter(drama.getId(), null, null))).containsExactly(a, c.getId());
+        assertThat(popularIds(new PopularFilmsFilter(comedy.getId(), null, null))).containsExactly(b, c.getId());
+        assertThat(popularIds(new PopularFilmsFilter(null, otherRating.getId(), null))).containsExactly(b);
+        assertThat(popularIds(new PopularFilmsFilter(null, null, 2010))).containsExactly(b, c.getId());
+        assertThat(popularIds(new PopularFilmsFilter(drama.getId(), rating.getId(), 2010))).containsExactly(c.getId());
+        assertThat(popularIds(new PopularFilmsFilter(null, null, 1990))).isEmpty();
+
+        c.setGenres(new LinkedHashSet<>(List.of(comedy)));
+        c.setMpa(otherRating);
+        filmStorage.update(c);
+        filmStorage.addLike(c.getId(), user1);
+        filmStorage.addLike(c.getId(), user2);
+
+        assertThat(popularIds(new PopularFilmsFilter(drama.getId(), null, null))).containsExactly(a);
+        assertThat(popularIds(new PopularFilmsFilter(null, otherRating.getId(), null))).containsExactly(c.getId(), b);
+        filmStorage.rebuildPopularityIndex();
+        assertThat(popularIds(new PopularFilmsFilter(drama.getId(), null, null))).containsExactly(a);
+        assertThat(popularIds(new PopularFilmsFilter(null, otherRating.getId(), null))).containsExactly(c.getId(), b);
+        assertThat(popularIds(new PopularFilmsFilter(comedy.getId(), null, 2010))).containsExactly(c.getId(), b);
+    }
+
+    @Test
+    void filteredPopularShouldForgetDeletedGenreAndRating() {
+        Genre drama = genre();
+        Genre comedy = genre();
+        Rating otherRating = ratingStorage.create(Rating.builder().name(UUID.randomUUID().toString()).build());
+        long a = filmStorage.create(film(2000, otherRating, drama, comedy)).getId();
+        long b = filmStorage.create(film(2000, rating, comedy)).getId();
+        assertThat(filmStorage.findById(a)).map(Film::getMpa).isPresent();
+
+        jdbcTemplate.update("DELETE FROM genres WHERE id = ?", drama.getId());
+        filmStorage.evictGenre(drama.getId());
+        ratingStorage.delete(otherRating.getId());
+        filmStorage.evictRating(otherRating.getId());
+
+        assertThat(popularIds(new PopularFilmsFilter(drama.getId(), null, null))).isEmpty();
+        assertThat(popularIds(new PopularFilmsFilter(null, otherRating.getId(), null))).isEmpty();
+        assertThat(popularIds(new PopularFilmsFilter(comedy.getId(), null, 2000))).containsExactlyInAnyOrder(a, b);
+        assertThat(filmStorage.findById(a)).map(Film::getMpa).isEmpty();
+        filmStorage.rebuildPopularityIndex();
+        assertThat(popularIds(new PopularFilmsFilter(drama.getId(), null, null))).isEmpty();
+        assertThat(popularIds(new PopularFilmsFilter(null, otherRating.getId(), null))).isEmpty();
+    }
+
+    private List<Long> popularIds(PopularFilmsFilter filter) {
+        return filmStorage.findPopular(10, filter).stream().map(Film::getId).toList();
+    }
+
+    @Test
+    void findByIdShouldReturnLikesCountAndFindLikesShouldPaginate() {
+        Film film = filmStorage.create(film());
+        List<Long> userIds = List.of(userStorage.create(user()).getId(),
+                userStorage.create(user()).getId(),
+                userStorage.create(user()).getId());
+        userIds.forEach(userId -> filmStorage.addLike(film.getId(), userId));
+
+        Film loaded = filmStorage.findById(film.getId()).orElseThrow();
+        assertThat(loaded.getLikesCount()).isEqualTo(3);
+        assertThat(loaded.getLikes()).containsExactlyInAnyOrderElementsOf(userIds);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?",
+                Integer.class, film.getId(), userIds.getFirst())).isEqualTo(1);
+        assertThat(filmStorage.findLikes(film.getId(), userIds.getFirst(), 1)).containsExactly(userIds.get(1));
+    }
+
+    @Test
+    void repairLikeCountShouldRecountBulkImportedLikes() {
+        Film film = filmStorage.create(film());
+        User user = userStorage.create(user());
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", film.getId(), user.getId());
+
+        assertThat(filmStorage.repairLikeCount()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, film.getId()))
+                .isEqualTo(1);
+        assertThat(filmStorage.checkPopularityIndex(100)).isTrue();
+    }
+
+    @Test
+    void updateShouldReplaceOnlyChangedGenres() {
+        List<Genre> genres = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO genres(name) VALUES (?)", UUID.randomUUID().toString());
+            long genreId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM genres", Long.class);
+            genres.add(Genre.builder().id(genreId).build());
+        }
+        Film film = film();
+        film.setGenres(new LinkedHashSet<>(List.of(genres.get(0), genres.get(1))));
+        film = filmStorage.create(film);
+
+        film.setGenres(new LinkedHashSet<>(List.of(genres.get(1), genres.get(2))));
+        Film updated = filmStorage.update(film);
+
+        assertThat(updated.getGenres()).extracting(Genre::getId)
+                .containsExactly(genres.get(1).getId(), genres.get(2).getId());
+    }
+
+    @Test
+    void likeErrorsShouldComeFromConstraints() {
+        Film film = filmStorage.create(film());
+        User user = userStorage.create(user());
+
+        assertThat(filmStorage.addLike(film.getId(), user.getId()).likesCount()).isEqualTo(1);
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), user.getId()))
+                .isInstanceOf(DuplicatedDataException.class);
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), user.getId() + 1))
+                .isInstanceOf(NotFoundException.class).hasMessage("Пользователь не найден");
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId() + 1, user.getId()))
+                .isInstanceOf(NotFoundException.class).hasMessage("Фильм не найден");
+
+        assertThat(filmStorage.deleteLike(film.getId(), user.getId()).likesCount()).isZero();
+        assertThatThrownBy(() -> filmStorage.deleteLike(film.getId(), user.getId()))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void concurrentLikesShouldKeepCountConsistent() throws Exception {
+        final int users = 2_000;
+        final int attemptsPerUser = 2;
+        Film film = filmStorage.create(film());
+        jdbcTemplate.update("""
+                INSERT INTO users (name, login, email, birthday)
+                SELECT 'user ' || X, 'user' || X, 'stress' || X || '@mail.com', DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, users);
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM users", Long.class);
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger duplicated = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int attempt = 0; attempt < attemptsPerUser; attempt++) {
+                for (long userId : userIds) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            filmStorage.addLike(film.getId(), userId);
+                            added.incrementAndGet();
+                        } catch (DuplicatedDataException e) {
+                            duplicated.incrementAndGet();
+                        }
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(added.get()).isEqualTo(users);
+        assertThat(duplicated.get()).isEqualTo(users * (attemptsPerUser - 1));
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Long.class, film.getId()))
+                .isEqualTo(users);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Long.class, film.getId()))
+                .isEqualTo(users);
+        assertThat(filmStorage.checkPopularityIndex(1)).isTrue();
+    }
+
+    private Film film(int year, Rating mpa, Genre... genres) {
+        Film film = film();
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setMpa(mpa);
+        film.setGenres(new LinkedHashSet<>(List.of(genres)));
+        return film;
+    }
+
+    private Genre genre() {
+        jdbcTemplate.update("INSERT INTO genres(name) VALUES (?)", UUID.randomUUID().toString());
+        return Genre.builder().id(jdbcTemplate.queryForObject("SELECT MAX(id) FROM genres", Long.class)).build();
+    }
+
+    private Film film() {
+        return Film.builder()
+                .name(UUID.randomUUID().toString())
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(Duration.ofMinutes(90))
+                .mpa(rating)
+                .build();
+    }
+
+    private User user() {
+        String name = UUID.randomUUID().toString();
+        return User.builder()
+                .name(name)
+                .login(name)
+                .email(name + "@mail.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Запуск: mvn test -Dfilmorate.benchmark=true -Dtest=InMemoryFilmStorageBenchmarkTest
+@Slf4j
+@EnabledIfSystemProperty(named = "filmorate.benchmark", matches = "true")
+class InMemoryFilmStorageBenchmarkTest {
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+    private static final int FILMS = 1_000;
+
+    @Test
+    void createAndAddLikeThroughputByThreadCount() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            // прогрев, затем замер
+            run(threads);
+            double createsPerSecond = 0;
+            double likesPerSecond = 0;
+            for (int run = 0; run < 3; run++) {
+                double[] result = run(threads);
+                createsPerSecond = Math.max(createsPerSecond, result[0]);
+                likesPerSecond = Math.max(likesPerSecond, result[1]);
+            }
+            log.info("threads={} create: {} ops/s, addLike: {} ops/s",
+                    threads, Math.round(createsPerSecond), Math.round(likesPerSecond));
+        }
+    }
+
+    private double[] run(int threads) throws Exception {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        long createNanos = measure(threads, thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                filmStorage.create(InMemoryFilmStorageTest.film());
+            }
+        });
+        long likeNanos = measure(threads, thread -> {
+            long firstUserId = (long) thread * OPERATIONS_PER_THREAD;
+            for (long userId = firstUserId; userId < firstUserId + OPERATIONS_PER_THREAD; userId++) {
+                filmStorage.addLike(ThreadLocalRandom.current().nextLong(1, FILMS + 1), userId);
+            }
+        });
+        double creates = (double) threads * (OPERATIONS_PER_THREAD / 10);
+        double likes = (double) threads * OPERATIONS_PER_THREAD;
+        return new double[]{creates * 1e9 / createNanos, likes * 1e9 / likeNanos};
+    }
+
+    private long measure(int threads, ThreadTask task) throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int threadNumber = thread;
+                futures.add(executor.submit(() -> task.run(threadNumber)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryFilmStorageTest {
+    private static final int THREADS = 8;
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+
+    @Test
+    void concurrentCreatesAndLikesShouldNotLoseUpdates() throws Exception {
+        final int filmsPerThread = 500;
+        final int likesPerThread = 1_000;
+        Film liked = filmStorage.create(film());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                long firstUserId = (long) thread * likesPerThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < filmsPerThread; i++) {
+                        filmStorage.create(film());
+                    }
+                    for (long userId = firstUserId; userId < firstUserId + likesPerThread; userId++) {
+                        filmStorage.addLike(liked.getId(), userId);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(filmStorage.findAll()).hasSize(THREADS * filmsPerThread + 1);
+        assertThat(filmStorage.findById(liked.getId())).hasValueSatisfying(film -> {
+            assertThat(film.getLikes()).hasSize(THREADS * likesPerThread);
+            assertThat(film.getLikesCount()).isEqualTo(THREADS * likesPerThread);
+        });
+        assertThat(filmStorage.findPopular(1)).extracting(Film::getId).containsExactly(liked.getId());
+    }
+
+    @Test
+    void findEqualShouldFollowNameAndReleaseDateChanges() {
+        Film film = filmStorage.create(film());
+        Film renamed = film();
+        renamed.setId(film.getId());
+        renamed.setName("Renamed  Film");
+
+        assertThat(filmStorage.findEqual(film())).map(Film::getId).contains(film.getId());
+
+        filmStorage.update(renamed);
+        Film sameAsRenamed = film();
+        sameAsRenamed.setName(" renamed film ");
+        assertThat(filmStorage.findEqual(film())).isEmpty();
+        assertThat(filmStorage.findEqual(sameAsRenamed)).map(Film::getId).contains(film.getId());
+
+        filmStorage.delete(film.getId());
+        assertThat(filmStorage.findEqual(sameAsRenamed)).isEmpty();
+    }
+
+    static Film film() {
+        return Film.builder()
+                .name("film")
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(Duration.ofMinutes(90))
+                .build();
+    }
+}
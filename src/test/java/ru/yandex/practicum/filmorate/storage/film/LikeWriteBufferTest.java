@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.rating.DbRatingStorage;
+import ru.yandex.practicum.filmorate.storage.user.DbUserStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ContextConfiguration(classes = {DbFilmStorage.class, DbUserStorage.class, DbRatingStorage.class, FilmPopularityIndex.class,
+        FilmSimilarityIndex.class, FilmTrendingIndex.class, FilmCache.class})
+class LikeWriteBufferTest {
+
+    private final DbFilmStorage filmStorage;
+    private final DbUserStorage userStorage;
+    private final DbRatingStorage ratingStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSimilarityIndex similarityIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path journalDir;
+
+    private Film film;
+    private User first;
+    private User second;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        filmStorage.rebuildPopularityIndex();
+        Rating rating = ratingStorage.create(Rating.builder().name(UUID.randomUUID().toString()).build());
+        film = filmStorage.create(Film.builder()
+                .name("film")
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(Duration.ofMinutes(90))
+                .mpa(rating)
+                .build());
+        first = userStorage.create(user());
+        second = userStorage.create(user());
+    }
+
+    @Test
+    void bufferedLikesShouldBeWrittenInBatchesWithLastEventPerUserWinning() throws Exception {
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, popularityIndex, similarityIndex, journalDir, 60_000, 1_000);
+        buffer.start();
+
+        buffer.addLike(film.getId(), first.getId());
+        buffer.addLike(film.getId(), second.getId());
+        buffer.deleteLike(film.getId(), second.getId());
+        buffer.addLike(film.getId(), second.getId());
+        buffer.deleteLike(film.getId(), first.getId());
+        assertThat(filmStorage.findLikes(film.getId(), 0, 10)).isEmpty();
+
+        buffer.stop();
+
+        assertThat(filmStorage.findLikes(film.getId(), 0, 10)).containsExactly(second.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Long.class, film.getId()))
+                .isEqualTo(1);
+        assertThat(popularityIndex.getLikesCount(film.getId())).isEqualTo(1);
+        assertThat(journalSegments()).isEmpty();
+    }
+
+    @Test
+    void bufferedLikesShouldKeepSynchronousErrors() throws Exception {
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, popularityIndex, similarityIndex, journalDir, 60_000, 1_000);
+        buffer.start();
+
+        buffer.addLike(film.getId(), first.getId());
+        // лайк ещё не записан в БД, повтор отклоняется по неподтверждённому событию
+        assertThatThrownBy(() -> buffer.addLike(film.getId(), first.getId()))
+                .isInstanceOf(DuplicatedDataException.class);
+        assertThatThrownBy(() -> buffer.addLike(film.getId(), Long.MAX_VALUE))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> buffer.deleteLike(film.getId(), second.getId()))
+                .isInstanceOf(NotFoundException.class);
+
+        buffer.flush();
+        // после сброса состояние читается из графа лайков
+        assertThatThrownBy(() -> buffer.addLike(film.getId(), first.getId()))
+                .isInstanceOf(DuplicatedDataException.class);
+        buffer.deleteLike(film.getId(), first.getId());
+        assertThatThrownBy(() -> buffer.deleteLike(film.getId(), first.getId()))
+                .isInstanceOf(NotFoundException.class);
+
+        buffer.stop();
+        assertThat(filmStorage.findLikes(film.getId(), 0, 10)).isEmpty();
+    }
+
+    @Test
+    void startShouldReplayUnflushedJournalSegments() throws Exception {
+        long now = Instant.now().toEpochMilli();
+        Files.write(journalDir.resolve("likes-0000000000000000007.journal"), List.of(
+                "+ %d %d %d".formatted(film.getId(), first.getId(), now),
+                "+ %d %d %d".formatted(film.getId(), second.getId(), now),
+                "+ %d %d %d".formatted(film.getId(), Long.MAX_VALUE, now)));
+        Files.write(journalDir.resolve("likes-0000000000000000008.journal"), List.of(
+                "- %d %d %d".formatted(film.getId(), first.getId(), now)));
+
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, popularityIndex, similarityIndex, journalDir, 60_000, 1_000);
+        buffer.start();
+
+        assertThat(filmStorage.findLikes(film.getId(), 0, 10)).containsExactly(second.getId());
+        assertThat(popularityIndex.getLikesCount(film.getId())).isEqualTo(1);
+        assertThat(journalSegments()).hasSize(1);
+
+        buffer.stop();
+        assertThat(journalSegments()).isEmpty();
+    }
+
+    private List<Path> journalSegments() throws Exception {
+        try (var files = Files.list(journalDir)) {
+            return files.toList();
+        }
+    }
+
+    private User user() {
+        String name = UUID.randomUUID().toString();
+        return User.builder()
+                .name(name)
+                .login(name)
+                .email(name + "@mail.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.storage.genre;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ContextConfiguration(classes = {DbGenreStorage.class})
+class DbGenreStorageTest {
+
+    private final DbGenreStorage genreStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findByIdShouldBeServedFromCacheUntilStorageWriteInvalidatesIt() {
+        Genre genre = genreStorage.create(Genre.builder().name(UUID.randomUUID().toString()).build());
+        assertThat(genreStorage.findAll()).extracting(Genre::getId).contains(genre.getId());
+
+        jdbcTemplate.update("UPDATE genres SET name = 'changed outside' WHERE id = ?", genre.getId());
+        assertThat(genreStorage.findById(genre.getId())).hasValueSatisfying(cached ->
+                assertThat(cached.getName()).isEqualTo(genre.getName()));
+        assertThat(genreStorage.findAll()).extracting(Genre::getName).contains(genre.getName());
+
+        genre.setName("updated");
+        genreStorage.update(genre);
+        assertThat(genreStorage.findById(genre.getId())).hasValueSatisfying(cached ->
+                assertThat(cached.getName()).isEqualTo("updated"));
+
+        genreStorage.delete(genre.getId());
+        assertThat(genreStorage.findById(genre.getId())).isEmpty();
+        assertThat(genreStorage.findAll()).extracting(Genre::getId).doesNotContain(genre.getId());
+    }
+
+    @Test
+    void findMissingIdsShouldReturnEveryUnknownId() {
+        Genre cached = genreStorage.create(Genre.builder().name(UUID.randomUUID().toString()).build());
+        genreStorage.findAll();
+        jdbcTemplate.update("INSERT INTO genres(name) VALUES (?)", UUID.randomUUID().toString());
+        long insertedOutside = jdbcTemplate.queryForObject("SELECT MAX(id) FROM genres", Long.class);
+
+        assertThat(genreStorage.findMissingIds(List.of(cached.getId(), insertedOutside, -2L, -1L)))
+                .containsExactly(-2L, -1L);
+    }
+}
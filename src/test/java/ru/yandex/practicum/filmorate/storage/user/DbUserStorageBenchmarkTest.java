@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Dfilmorate.benchmark=true -Dtest=DbUserStorageBenchmarkTest
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@EnabledIfSystemProperty(named = "filmorate.benchmark", matches = "true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ContextConfiguration(classes = {DbUserStorage.class, FilmPopularityIndex.class})
+class DbUserStorageBenchmarkTest {
+    private static final int FRIENDS_COUNT = 5_000;
+    private static final int RUNS = 10;
+
+    private final DbUserStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (id, name, login, email, birthday)
+                SELECT X, 'user ' || X, 'user' || X, 'user' || X || '@mail.com', DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, FRIENDS_COUNT + 1);
+        jdbcTemplate.update("""
+                INSERT INTO friends (offered_by, candidate_id, offered_at)
+                SELECT 1, X, CURRENT_TIMESTAMP
+                FROM SYSTEM_RANGE(2, ?)
+                """, FRIENDS_COUNT + 1);
+        userStorage.loadFriendGraph();
+    }
+
+    @Test
+    void friendListLatencyWithFiveThousandFriends() {
+        long batchedNanos = Long.MAX_VALUE;
+        List<User> friends = List.of();
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            friends = userStorage.findFriends(1);
+            batchedNanos = Math.min(batchedNanos, System.nanoTime() - start);
+        }
+
+        long perIdNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            List<User> loaded = new ArrayList<>();
+            for (long friendId : userStorage.findById(1).orElseThrow().getFriends()) {
+                userStorage.findById(friendId).ifPresent(loaded::add);
+            }
+            perIdNanos = Math.min(perIdNanos, System.nanoTime() - start);
+        }
+
+        log.info("friends={} findFriends: {} ms; findById per friend: {} ms",
+                FRIENDS_COUNT, batchedNanos / 1_000_000, perIdNanos / 1_000_000);
+
+        assertThat(friends).hasSize(FRIENDS_COUNT);
+    }
+}
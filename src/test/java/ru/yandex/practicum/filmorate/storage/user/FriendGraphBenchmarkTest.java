@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Dfilmorate.benchmark=true -Dtest=FriendGraphBenchmarkTest
+@Slf4j
+@EnabledIfSystemProperty(named = "filmorate.benchmark", matches = "true")
+class FriendGraphBenchmarkTest {
+    private static final int USERS = 100_000;
+    private static final int EDGES = 1_000_000;
+
+    @Test
+    void memoryPerMillionEdges() {
+        long[] from = new long[EDGES];
+        long[] to = new long[EDGES];
+        Random random = new Random(42);
+        for (int i = 0; i < EDGES; i++) {
+            from[i] = random.nextInt(USERS) + 1;
+            to[i] = random.nextInt(USERS) + 1;
+        }
+
+        long before = usedMemory();
+        // так друзья хранятся в User.friends: множество упакованных Long на каждого пользователя
+        Map<Long, Set<Long>> boxed = new HashMap<>();
+        for (int i = 0; i < EDGES; i++) {
+            boxed.computeIfAbsent(from[i], id -> new HashSet<>()).add(to[i]);
+        }
+        long boxedBytes = usedMemory() - before;
+
+        before = usedMemory();
+        FriendGraph graph = new FriendGraph();
+        graph.load(from, to, EDGES);
+        long graphBytes = usedMemory() - before;
+
+        double millions = graph.edgeCount() / 1e6;
+        log.info("edges={} Map<Long, Set<Long>>: {} MB, FriendGraph: {} MB (estimate {} MB) per million edges",
+                graph.edgeCount(), "%.1f".formatted(boxedBytes / 1e6 / millions), "%.1f".formatted(graphBytes / 1e6 / millions),
+                "%.1f".formatted(graph.estimateBytes() / 1e6 / millions));
+
+        assertThat(boxed).isNotEmpty();
+        assertThat(graphBytes).isLessThan(boxedBytes);
+    }
+
+    @Test
+    void suggestionsLatencyForUserWithThousandsOfFriends() {
+        final int friends = 5_000;
+        long[] from = new long[EDGES + friends];
+        long[] to = new long[EDGES + friends];
+        Random random = new Random(42);
+        for (int i = 0; i < EDGES; i++) {
+            from[i] = random.nextInt(USERS) + 1;
+            to[i] = random.nextInt(USERS) + 1;
+        }
+        for (int i = 0; i < friends; i++) {
+            from[EDGES + i] = 0;
+            to[EDGES + i] = i + 1;
+        }
+        FriendGraph graph = new FriendGraph();
+
+        long coldNanos = Long.MAX_VALUE;
+        long[] suggestions = new long[0];
+        for (int run = 0; run < 5; run++) {
+            graph.load(from, to, from.length);
+            long start = System.nanoTime();
+            suggestions = graph.suggestFriendIds(0, 10);
+            coldNanos = Math.min(coldNanos, System.nanoTime() - start);
+        }
+        long start = System.nanoTime();
+        graph.suggestFriendIds(0, 10);
+        long cachedNanos = System.nanoTime() - start;
+
+        log.info("friends={} suggestions cold: {} ms, cached: {} ms",
+                friends, "%.2f".formatted(coldNanos / 1e6), "%.3f".formatted(cachedNanos / 1e6));
+
+        assertThat(suggestions).hasSize(10);
+    }
+
+    @Test
+    void pathLatencyOnMillionEdges() {
+        long[] from = new long[EDGES];
+        long[] to = new long[EDGES];
+        Random random = new Random(42);
+        for (int i = 0; i < EDGES; i++) {
+            from[i] = random.nextInt(USERS) + 1;
+            to[i] = random.nextInt(USERS) + 1;
+        }
+        FriendGraph graph = new FriendGraph();
+        graph.load(from, to, EDGES);
+
+        final int queries = 1_000;
+        int found = 0;
+        long totalLength = 0;
+        long start = System.nanoTime();
+        for (int query = 0; query < queries; query++) {
+            long[] path = graph.findPath(random.nextInt(USERS) + 1, random.nextInt(USERS) + 1,
+                    FriendGraph.MAX_PATH_LENGTH);
+            if (path.length > 0) {
+                found++;
+                totalLength += path.length - 1;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        log.info("edges={} paths found {}/{}, avg length {}, avg {} ms per query",
+                EDGES, found, queries, "%.2f".formatted((double) totalLength / Math.max(found, 1)),
+                "%.3f".formatted(nanos / 1e6 / queries));
+
+        assertThat(found).isPositive();
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
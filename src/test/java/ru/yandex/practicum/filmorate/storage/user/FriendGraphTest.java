@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphTest {
+    private static final int USERS = 500;
+    private static final int EDGES = 900;
+
+    @Test
+    void findPathShouldMatchOneSidedBreadthFirstSearch() {
+        long[] from = new long[EDGES];
+        long[] to = new long[EDGES];
+        Random random = new Random(42);
+        for (int i = 0; i < EDGES; i++) {
+            from[i] = random.nextInt(USERS);
+            to[i] = random.nextInt(USERS);
+        }
+        FriendGraph graph = new FriendGraph();
+        graph.load(from, to, EDGES);
+
+        for (int query = 0; query < 2_000; query++) {
+            long userId = random.nextInt(USERS);
+            long otherId = random.nextInt(USERS);
+            int maxLength = 1 + random.nextInt(FriendGraph.MAX_PATH_LENGTH);
+            Integer distance = distances(graph, userId).get(otherId);
+
+            long[] path = graph.findPath(userId, otherId, maxLength);
+
+            if (distance == null || distance > maxLength) {
+                assertThat(path).isEmpty();
+                continue;
+            }
+            assertThat(path).hasSize(distance + 1);
+            assertThat(path[0]).isEqualTo(userId);
+            assertThat(path[path.length - 1]).isEqualTo(otherId);
+            for (int i = 1; i < path.length; i++) {
+                assertThat(graph.isFriend(path[i - 1], path[i])).isTrue();
+            }
+        }
+    }
+
+    private static Map<Long, Integer> distances(FriendGraph graph, long userId) {
+        Map<Long, Integer> distances = new HashMap<>(Map.of(userId, 0));
+        Queue<Long> queue = new ArrayDeque<>(Arrays.asList(userId));
+        while (!queue.isEmpty()) {
+            long current = queue.poll();
+            for (long friendId : graph.findFriendIds(current)) {
+                if (distances.putIfAbsent(friendId, distances.get(current) + 1) == null) {
+                    queue.add(friendId);
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LruCacheTest {
+
+    @Test
+    void leastRecentlyReadEntryShouldBeEvicted() {
+        LruCache<String> cache = new LruCache<>(2);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1, id -> load(id, loads));
+        cache.get(2, id -> load(id, loads));
+        cache.get(1, id -> load(id, loads));
+        cache.get(3, id -> load(id, loads));
+        cache.get(1, id -> load(id, loads));
+        cache.get(2, id -> load(id, loads));
+
+        assertThat(loads).hasValue(4);
+        assertThat(cache.stats()).isEqualTo(new LruCache.Stats(2, 4, 2, 2));
+    }
+
+    @Test
+    void loadStartedBeforeInvalidationShouldNotBeCached() {
+        LruCache<String> cache = new LruCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        Optional<String> stale = cache.get(1, id -> {
+            cache.invalidate(id);
+            return load(id, loads);
+        });
+        cache.get(1, id -> load(id, loads));
+        cache.get(1, id -> load(id, loads));
+
+        assertThat(stale).contains("value 1");
+        assertThat(loads).hasValue(2);
+        assertThat(cache.get(2, id -> Optional.empty())).isEmpty();
+        assertThat(cache.stats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledCacheShouldAlwaysLoad() {
+        LruCache<String> cache = new LruCache<>(0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1, id -> load(id, loads));
+        cache.get(1, id -> load(id, loads));
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.isEnabled()).isFalse();
+    }
+
+    private static Optional<String> load(long id, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return Optional.of("value " + id);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopListCacheTest {
+    private static final long TTL_NANOS = 1_000;
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final TopListCache<String, Long> cache = new TopListCache<>(TTL_NANOS, 10, now::get);
+
+    @Test
+    void smallerCountShouldBeSlicedFromLoadedList() {
+        assertThat(cache.get("all", 5, this::load)).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(cache.get("all", 3, this::load)).containsExactly(1L, 2L, 3L);
+        assertThat(loads).hasValue(1);
+
+        assertThat(cache.get("all", 8, this::load)).hasSize(8);
+        assertThat(cache.get("all", 5, this::load)).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(cache.get("other", 5, this::load)).hasSize(5);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void shortListShouldAnswerAnyCount() {
+        assertThat(cache.get("few", 5, (key, count) -> load(key, 2))).containsExactly(1L, 2L);
+        assertThat(cache.get("few", 100, this::load)).containsExactly(1L, 2L);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void staleListShouldBeServedWhileOneRefreshRuns() throws Exception {
+        cache.get("all", 3, this::load);
+        now.addAndGet(TTL_NANOS + 1);
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Long> stale = cache.get("all", 3, (key, count) -> {
+            refreshStarted.countDown();
+            await(release);
+            return List.of(30L, 20L, 10L);
+        });
+        assertThat(refreshStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        // пока идёт пересчёт, второй не запускается
+        assertThat(cache.get("all", 3, this::load)).isEqualTo(stale).containsExactly(1L, 2L, 3L);
+        assertThat(loads).hasValue(1);
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.get("all", 3, this::load).getFirst() != 30L && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(cache.get("all", 2, this::load)).containsExactly(30L, 20L);
+    }
+
+    @Test
+    void zeroTtlShouldDisableCache() {
+        TopListCache<String, Long> disabled = new TopListCache<>(0, 10, now::get);
+
+        disabled.get("all", 3, this::load);
+        disabled.get("all", 3, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<Long> load(String key, int count) {
+        loads.incrementAndGet();
+        return LongStream.rangeClosed(1, count).boxed().toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.util.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongGraphTest {
+
+    @Test
+    void randomEditsShouldMatchReferenceModel() {
+        LongGraph graph = new LongGraph();
+        Map<Long, Set<Long>> successors = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 50_000; step++) {
+            long from = random.nextInt(300);
+            long to = random.nextInt(300);
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    graph.removeVertex(from);
+                    successors.remove(from);
+                    successors.values().forEach(set -> set.remove(from));
+                }
+                case 1, 2, 3 -> assertThat(graph.removeEdge(from, to))
+                        .isEqualTo(successors.containsKey(from) && successors.get(from).remove(to));
+                default -> assertThat(graph.addEdge(from, to))
+                        .isEqualTo(successors.computeIfAbsent(from, id -> new TreeSet<>()).add(to));
+            }
+        }
+
+        long edges = 0;
+        for (long vertex = 0; vertex < 300; vertex++) {
+            Set<Long> expected = successors.getOrDefault(vertex, Set.of());
+            assertThat(graph.successors(vertex)).containsExactly(expected.stream().mapToLong(Long::longValue).toArray());
+            long current = vertex;
+            long[] expectedPredecessors = successors.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(current))
+                    .mapToLong(Map.Entry::getKey)
+                    .sorted()
+                    .toArray();
+            assertThat(graph.predecessors(vertex)).containsExactly(expectedPredecessors);
+            edges += expected.size();
+        }
+        assertThat(graph.edgeCount()).isEqualTo(edges);
+    }
+
+    @Test
+    void loadShouldSortAndDeduplicateEdges() {
+        LongGraph graph = new LongGraph();
+        graph.load(new long[]{1, 1, 1, 2}, new long[]{3, 2, 3, 1}, 4);
+
+        assertThat(graph.successors(1)).containsExactly(2, 3);
+        assertThat(graph.predecessors(1)).containsExactly(2);
+        assertThat(graph.edgeCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.util.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowCounterTest {
+    private static final long BUCKET_MILLIS = 60_000;
+    private static final int BUCKET_COUNT = 60;
+
+    @Test
+    void eventsShouldLeaveWindowWithTheirBucket() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(BUCKET_MILLIS, BUCKET_COUNT);
+        long now = 1_000 * BUCKET_MILLIS;
+
+        counter.add(1, now, 1, now);
+        counter.add(2, now - 30 * BUCKET_MILLIS, 1, now);
+        counter.add(2, now - 30 * BUCKET_MILLIS, 1, now);
+        counter.add(3, now - BUCKET_COUNT * BUCKET_MILLIS, 1, now);
+
+        assertThat(counter.top(10, now)).containsExactly(2L, 1L);
+        assertThat(counter.top(10, now + 30 * BUCKET_MILLIS)).containsExactly(1L);
+
+        // удаление события, вышедшего из окна, не трогает события в окне
+        counter.add(2, now - 30 * BUCKET_MILLIS, -1, now + 30 * BUCKET_MILLIS);
+        assertThat(counter.count(1, now + 30 * BUCKET_MILLIS)).isEqualTo(1);
+        assertThat(counter.top(10, now + 100 * BUCKET_MILLIS)).isEmpty();
+    }
+
+    @Test
+    void randomEventsShouldMatchReferenceModel() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(BUCKET_MILLIS, BUCKET_COUNT);
+        List<long[]> events = new ArrayList<>();
+        Random random = new Random(42);
+        long now = 1_000 * BUCKET_MILLIS;
+
+        for (int step = 0; step < 20_000; step++) {
+            now += random.nextInt(10) == 0 ? random.nextInt(5 * (int) BUCKET_MILLIS) : random.nextInt(1000);
+            long key = random.nextInt(50);
+            if (random.nextInt(4) == 0 && !events.isEmpty()) {
+                long[] event = events.remove(random.nextInt(events.size()));
+                counter.add(event[0], event[1], -1, now);
+            } else {
+                long time = now - random.nextInt(2 * BUCKET_COUNT) * BUCKET_MILLIS;
+                events.add(new long[]{key, time});
+                counter.add(key, time, 1, now);
+            }
+
+            if (step % 100 == 0) {
+                assertThat(counter.top(10, now)).isEqualTo(expectedTop(events, now, 10));
+            }
+        }
+    }
+
+    private static List<Long> expectedTop(List<long[]> events, long now, int count) {
+        long currentBucket = now / BUCKET_MILLIS;
+        Map<Long, Long> totals = new HashMap<>();
+        for (long[] event : events) {
+            if (event[1] / BUCKET_MILLIS > currentBucket - BUCKET_COUNT) {
+                totals.merge(event[0], 1L, Long::sum);
+            }
+        }
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}